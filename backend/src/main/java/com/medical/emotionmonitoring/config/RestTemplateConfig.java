@@ -1,19 +1,197 @@
 package com.medical.emotionmonitoring.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * HTTP client used for emotion provider calls. Connections are pooled and kept alive so steady-state
+ * calls reuse an established TLS connection instead of handshaking on every request, and each provider
+ * host gets its own connection limit so one slow provider cannot exhaust the whole pool.
+ */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
 
+    private static final String POOL_NAME = "emotion-providers";
+
+    @Value("${emotion.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${emotion.http.max-connections-per-provider:10}")
+    private int maxConnectionsPerProvider;
+
+    @Value("${emotion.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${emotion.http.read-timeout-ms:10000}")
+    private long readTimeoutMs;
+
+    @Value("${emotion.http.pool-acquire-timeout-ms:2000}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${emotion.http.idle-eviction-seconds:60}")
+    private long idleEvictionSeconds;
+
+    @Value("${emotion.http.connection-ttl-minutes:5}")
+    private long connectionTtlMinutes;
+
+    @Value("${emotion.api.luxand.url:https://api.luxand.cloud/photo/emotions}")
+    private String luxandApiUrl;
+
+    @Value("${emotion.api.luxand.max-connections:${emotion.http.max-connections-per-provider:10}}")
+    private int luxandMaxConnections;
+
+    @Value("${emotion.api.huggingface.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}")
+    private String huggingfaceApiUrl;
+
+    @Value("${emotion.api.huggingface.max-connections:${emotion.http.max-connections-per-provider:10}}")
+    private int huggingfaceMaxConnections;
+
+    @Value("${emotion.api.edenai.url:https://api.edenai.run/v2/image/face_detection}")
+    private String edenaiApiUrl;
+
+    @Value("${emotion.api.edenai.max-connections:${emotion.http.max-connections-per-provider:10}}")
+    private int edenaiMaxConnections;
+
+    @Value("${emotion.api.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}")
+    private String emotionApiUrl;
+
+    @Value("${emotion.api.max-connections:${emotion.http.max-connections-per-provider:10}}")
+    private int emotionApiMaxConnections;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager providerConnectionManager() {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerProvider)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMinutes(connectionTtlMinutes))
+                        // Re-check connections that sat idle long enough for the provider to drop them
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        // Providers sharing a host share a route, so the route gets the largest configured limit
+        Map<HttpRoute, Integer> routeLimits = new LinkedHashMap<>();
+        providerRoutes().forEach(p -> routeLimits.merge(p.route(), p.maxConnections(), Math::max));
+        routeLimits.forEach(manager::setMaxPerRoute);
+
+        log.info("Emotion provider connection pool: {} connections total, per-provider limits {}",
+                maxConnections, providerRoutes().stream()
+                        .map(p -> p.provider() + "=" + manager.getMaxPerRoute(p.route()))
+                        .toList());
+        return manager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient providerHttpClient(PoolingHttpClientConnectionManager providerConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(providerConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictionSeconds))
+                .disableCookieManagement()
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000); // 5 seconds
-        factory.setReadTimeout(10000); // 10 seconds
-        return new RestTemplate(factory);
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient providerHttpClient) {
+        // Built through RestTemplateBuilder so calls are also timed as http.client.requests
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(providerHttpClient))
+                .build();
+    }
+
+    /**
+     * Pool-wide gauges plus leased / available / pending connections and the limit for each provider
+     */
+    @Bean
+    public MeterBinder providerConnectionPoolMetrics(PoolingHttpClientConnectionManager providerConnectionManager) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(providerConnectionManager, POOL_NAME)
+                    .bindTo(registry);
+
+            for (ProviderRoute providerRoute : providerRoutes()) {
+                HttpRoute route = providerRoute.route();
+                Tags tags = Tags.of("provider", providerRoute.provider(),
+                        "host", route.getTargetHost().getHostName());
+                registerRouteGauge(registry, "emotion.provider.http.connections", tags.and("state", "leased"),
+                        providerConnectionManager, route, PoolStats::getLeased);
+                registerRouteGauge(registry, "emotion.provider.http.connections", tags.and("state", "available"),
+                        providerConnectionManager, route, PoolStats::getAvailable);
+                registerRouteGauge(registry, "emotion.provider.http.connections", tags.and("state", "pending"),
+                        providerConnectionManager, route, PoolStats::getPending);
+                registerRouteGauge(registry, "emotion.provider.http.connections.max", tags,
+                        providerConnectionManager, route, PoolStats::getMax);
+            }
+        };
+    }
+
+    private static void registerRouteGauge(MeterRegistry registry, String name,
+                                           Tags tags, PoolingHttpClientConnectionManager manager,
+                                           HttpRoute route, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder(name, manager, m -> value.applyAsDouble(m.getStats(route)))
+                .tags(tags)
+                .register(registry);
+    }
+
+    private List<ProviderRoute> providerRoutes() {
+        List<ProviderRoute> routes = new ArrayList<>();
+        addRoute(routes, "luxand", luxandApiUrl, luxandMaxConnections);
+        addRoute(routes, "huggingface", huggingfaceApiUrl, huggingfaceMaxConnections);
+        addRoute(routes, "edenai", edenaiApiUrl, edenaiMaxConnections);
+        addRoute(routes, "default", emotionApiUrl, emotionApiMaxConnections);
+        return routes;
     }
-}
 
+    private static void addRoute(List<ProviderRoute> routes, String provider, String url, int maxConnections) {
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        try {
+            URI uri = URI.create(url);
+            boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+            int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+            HttpHost host = new HttpHost(uri.getScheme(), uri.getHost(), port);
+            // Must match the route the client plans for requests, which includes the secure flag
+            routes.add(new ProviderRoute(provider, new HttpRoute(host, null, secure), maxConnections));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid URL for emotion provider {}: {}", provider, url);
+        }
+    }
+
+    private record ProviderRoute(String provider, HttpRoute route, int maxConnections) {
+    }
+}
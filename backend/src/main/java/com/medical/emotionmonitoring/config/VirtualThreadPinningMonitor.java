@@ -0,0 +1,152 @@
+package com.medical.emotionmonitoring.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports where virtual threads get pinned to their carrier (blocking inside {@code synchronized}
+ * or native frames). Listens to the JDK's {@code jdk.VirtualThreadPinned} JFR event in-process,
+ * groups occurrences by the first application frame and periodically logs the worst offenders.
+ * Only active when virtual threads are enabled.
+ */
+@Slf4j
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "diagnostics.virtual-threads.pinning.enabled", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.medical.emotionmonitoring.";
+    private static final int REPORTED_SITES = 10;
+
+    private final Duration threshold;
+    private final Map<String, PinningSite> sites = new ConcurrentHashMap<>();
+    private RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(
+            @Value("${diagnostics.virtual-threads.pinning.threshold-ms:20}") long thresholdMillis) {
+        this.threshold = Duration.ofMillis(thresholdMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(PINNED_EVENT, this::record);
+        recording.startAsync();
+        log.info("Virtual thread pinning monitor started (threshold {} ms)", threshold.toMillis());
+    }
+
+    private void record(RecordedEvent event) {
+        String site = describeSite(event.getStackTrace());
+        PinningSite stats = sites.computeIfAbsent(site, key -> {
+            log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), key);
+            return new PinningSite(key);
+        });
+        stats.add(event.getDuration());
+    }
+
+    /**
+     * Log the pinning sites seen so far, most frequent first
+     */
+    @Scheduled(fixedDelayString = "${diagnostics.virtual-threads.pinning.report-interval-ms:300000}",
+            initialDelayString = "${diagnostics.virtual-threads.pinning.report-interval-ms:300000}")
+    public void logReport() {
+        if (sites.isEmpty()) {
+            log.debug("No virtual thread pinning above {} ms recorded", threshold.toMillis());
+            return;
+        }
+        List<PinningSite> worst = sites.values().stream()
+                .sorted(Comparator.comparingLong(PinningSite::count).reversed())
+                .limit(REPORTED_SITES)
+                .toList();
+        StringBuilder report = new StringBuilder("Virtual thread pinning report (")
+                .append(sites.size()).append(" sites):");
+        for (PinningSite site : worst) {
+            report.append(System.lineSeparator())
+                    .append("  ").append(site.count()).append(" pins, ")
+                    .append(site.totalMillis()).append(" ms total, ")
+                    .append(site.maxMillis()).append(" ms max at ")
+                    .append(site.site());
+        }
+        log.warn(report.toString());
+    }
+
+    @PreDestroy
+    public void stop() {
+        logReport();
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    /**
+     * Name the pin after the first application frame, falling back to the innermost frame
+     */
+    private static String describeSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "<no stack trace>";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        RecordedFrame frame = frames.stream()
+                .filter(f -> f.isJavaFrame() && f.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .orElse(frames.get(0));
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+
+    private static final class PinningSite {
+        private final String site;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private volatile long maxNanos;
+
+        private PinningSite(String site) {
+            this.site = site;
+        }
+
+        private void add(Duration duration) {
+            long nanos = duration.toNanos();
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        private String site() {
+            return site;
+        }
+
+        private long count() {
+            return count.sum();
+        }
+
+        private long totalMillis() {
+            return Duration.ofNanos(totalNanos.sum()).toMillis();
+        }
+
+        private long maxMillis() {
+            return Duration.ofNanos(maxNanos).toMillis();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.medical.emotionmonitoring.config;
+
+import com.medical.emotionmonitoring.controller.EmotionStreamHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.time.Duration;
+
+/**
+ * WebSocket endpoints. The handshake is an ordinary request to the secured API, so the JWT filter
+ * authenticates the session once and the handler reads the patient from the session principal.
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final EmotionStreamHandler emotionStreamHandler;
+
+    @Value("${app.cors.allowed-origins}")
+    private String[] allowedOrigins;
+
+    @Value("${emotion.stream.max-frame-bytes:1048576}")
+    private int maxFrameBytes;
+
+    @Value("${emotion.stream.idle-timeout-seconds:60}")
+    private long idleTimeoutSeconds;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(emotionStreamHandler, "/emotions/stream")
+                .setAllowedOrigins(allowedOrigins);
+    }
+
+    /**
+     * Frames larger than max-frame-bytes close the session (1009); sessions silent for the idle timeout are closed
+     */
+    @Bean
+    public ServletServerContainerFactoryBean webSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        container.setMaxTextMessageBufferSize(8192);
+        container.setMaxSessionIdleTimeout(Duration.ofSeconds(idleTimeoutSeconds).toMillis());
+        return container;
+    }
+}
@@ -1,15 +1,23 @@
 package com.medical.emotionmonitoring.controller;
 
+import com.medical.emotionmonitoring.dto.AlertAcknowledgeRequest;
 import com.medical.emotionmonitoring.dto.AlertResponse;
+import com.medical.emotionmonitoring.dto.CursorPageResponse;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
 import com.medical.emotionmonitoring.service.AlertService;
+import com.medical.emotionmonitoring.service.AlertStreamHub;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/alerts")
@@ -18,14 +26,25 @@ import java.util.stream.Collectors;
 public class AlertController {
 
     private final AlertService alertService;
+    private final AlertStreamHub alertStreamHub;
+
+    /**
+     * Server-Sent Events stream of the current doctor's new alerts. Browsers and SSE clients send
+     * Last-Event-ID on reconnect and receive the alerts they missed first.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('DOCTOR')")
+    public SseEmitter streamAlerts(
+            @AuthenticationPrincipal AuthenticatedUser currentUser,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return alertStreamHub.subscribe(currentUser.id(), lastEventId);
+    }
 
     @GetMapping("/doctor/{doctorId}")
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<List<AlertResponse>> getAlertsByDoctorId(@PathVariable Long doctorId) {
         try {
-            List<AlertResponse> alerts = alertService.getAlertsByDoctorId(doctorId).stream()
-                    .map(this::mapToAlertResponse)
-                    .collect(Collectors.toList());
+            List<AlertResponse> alerts = alertService.getAlertsByDoctorId(doctorId);
             return ResponseEntity.ok(alerts);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -36,15 +55,47 @@ public class AlertController {
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<List<AlertResponse>> getUnreadAlertsByDoctorId(@PathVariable Long doctorId) {
         try {
-            List<AlertResponse> alerts = alertService.getUnreadAlertsByDoctorId(doctorId).stream()
-                    .map(this::mapToAlertResponse)
-                    .collect(Collectors.toList());
+            List<AlertResponse> alerts = alertService.getUnreadAlertsByDoctorId(doctorId);
             return ResponseEntity.ok(alerts);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Unread alert count for the doctor's badge, served from memory
+     */
+    @GetMapping("/doctor/{doctorId}/unread/count")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<Map<String, Long>> getUnreadAlertCount(@PathVariable Long doctorId) {
+        return ResponseEntity.ok(Map.of("unreadCount", alertService.getUnreadCount(doctorId)));
+    }
+
+    /**
+     * The current doctor's alerts, newest first, one keyset page at a time
+     */
+    @GetMapping("/inbox")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<CursorPageResponse<AlertResponse>> getInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean unreadOnly,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(alertService.getInboxPage(currentUser.id(), unreadOnly, cursor, limit));
+    }
+
+    /**
+     * Mark many of the current doctor's alerts as read at once, by id and/or by creation time
+     */
+    @PutMapping("/read")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<Map<String, Integer>> acknowledgeAlerts(
+            @Valid @RequestBody AlertAcknowledgeRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        int updated = alertService.acknowledgeAlerts(currentUser.id(), request);
+        return ResponseEntity.ok(Map.of("updated", updated));
+    }
+
     @PutMapping("/{alertId}/read")
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<?> markAlertAsRead(@PathVariable Long alertId) {
@@ -55,18 +106,5 @@ public class AlertController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
     }
-
-    private AlertResponse mapToAlertResponse(com.medical.emotionmonitoring.entity.Alert alert) {
-        AlertResponse response = new AlertResponse();
-        response.setId(alert.getId());
-        response.setMessage(alert.getMessage());
-        response.setCreatedAt(alert.getCreatedAt());
-        response.setIsRead(alert.getIsRead());
-        response.setPatientId(alert.getPatient().getId());
-        response.setPatientName(alert.getPatient().getFullName());
-        response.setDoctorId(alert.getDoctor().getId());
-        response.setDoctorName(alert.getDoctor().getFullName());
-        return response;
-    }
 }
 
@@ -3,6 +3,7 @@ package com.medical.emotionmonitoring.controller;
 import com.medical.emotionmonitoring.dto.AuthResponse;
 import com.medical.emotionmonitoring.dto.LoginRequest;
 import com.medical.emotionmonitoring.dto.RegisterRequest;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
 import com.medical.emotionmonitoring.service.AuthService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +27,9 @@ public class AuthController {
         try {
             AuthResponse response = authService.register(request);
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (TooManyRequestsException e) {
+            // Password hashing is saturated; answered with 429 and Retry-After by the exception handler
+            throw e;
         } catch (RuntimeException e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", e.getMessage());
@@ -39,6 +43,8 @@ public class AuthController {
         try {
             AuthResponse response = authService.login(request);
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Authentication failed");
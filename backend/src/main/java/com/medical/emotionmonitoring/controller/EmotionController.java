@@ -1,28 +1,38 @@
 package com.medical.emotionmonitoring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medical.emotionmonitoring.dto.CursorPageResponse;
+import com.medical.emotionmonitoring.dto.DetectionJobResponse;
+import com.medical.emotionmonitoring.dto.EmotionBatchRequest;
 import com.medical.emotionmonitoring.dto.EmotionRequest;
 import com.medical.emotionmonitoring.dto.EmotionResponse;
 import com.medical.emotionmonitoring.dto.EmotionStatisticsResponse;
 import com.medical.emotionmonitoring.entity.Role;
-import com.medical.emotionmonitoring.entity.User;
 import com.medical.emotionmonitoring.exception.BusinessException;
-import com.medical.emotionmonitoring.exception.EntityNotFoundException;
 import com.medical.emotionmonitoring.exception.ValidationException;
-import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
+import com.medical.emotionmonitoring.service.EmotionDetectionJobService;
 import com.medical.emotionmonitoring.service.EmotionService;
 import com.medical.emotionmonitoring.service.EmotionStatisticsService;
+import com.medical.emotionmonitoring.service.EmotionWriteBuffer;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @RestController
@@ -33,54 +43,61 @@ public class EmotionController {
 
     private final EmotionService emotionService;
     private final EmotionStatisticsService emotionStatisticsService;
-    private final UserRepository userRepository;
-
+    private final EmotionDetectionJobService emotionDetectionJobService;
+    private final Optional<EmotionWriteBuffer> emotionWriteBuffer;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Save a reading; with the write-behind buffer enabled it is saved in the next group commit, and
+     * with ack-after-buffer durability the request is answered 202 before that commit
+     */
     @PostMapping
-    public ResponseEntity<EmotionResponse> createEmotion(@Valid @RequestBody EmotionRequest request) {
-        Long patientId = getCurrentUserId();
+    public ResponseEntity<EmotionResponse> createEmotion(
+            @Valid @RequestBody EmotionRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long patientId = currentUser.id();
+        if (emotionWriteBuffer.isPresent()) {
+            return emotionWriteBuffer.get().submit(patientId, request)
+                    .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved))
+                    .orElseGet(() -> ResponseEntity.accepted().build());
+        }
         EmotionResponse response = emotionService.createEmotion(patientId, request);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<EmotionResponse> getEmotionById(@PathVariable Long id) {
-        Long patientId = getCurrentUserId();
+    /**
+     * Upload many readings at once, e.g. the backlog of a device that was offline
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Integer>> createEmotions(
+            @Valid @RequestBody EmotionBatchRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        int saved = emotionService.createEmotions(currentUser.id(), request.getEmotions());
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("saved", saved));
+    }
+
+    @GetMapping("/{id:\\d+}")
+    public ResponseEntity<EmotionResponse> getEmotionById(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long patientId = currentUser.id();
         EmotionResponse response = emotionService.getEmotionById(id, patientId);
         return ResponseEntity.ok(response);
     }
 
     @PostMapping(value = "/detect", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<EmotionResponse> detectEmotionFromImage(@RequestParam("image") MultipartFile imageFile) {
+    public ResponseEntity<EmotionResponse> detectEmotionFromImage(
+            @RequestParam("image") MultipartFile imageFile,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         // Detailed logging for debugging
         log.info("=== Emotion Detection Request ===");
         log.info("Image file name: {}", imageFile.getOriginalFilename());
         log.info("Image file size: {} bytes", imageFile.getSize());
         log.info("Image content type: {}", imageFile.getContentType());
         
-        if (imageFile.isEmpty()) {
-            log.warn("Empty image file received");
-            throw new ValidationException("Image file is required");
-        }
+        validateImageUpload(imageFile);
 
-        // Validate image type
-        String contentType = imageFile.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            log.warn("Invalid content type: {}", contentType);
-            throw new ValidationException("File must be an image");
-        }
-
-        // Log base64 preview (first 50 chars)
-        try {
-            byte[] imageBytes = imageFile.getBytes();
-            String base64Preview = java.util.Base64.getEncoder().encodeToString(imageBytes);
-            log.debug("Base64 image length: {} chars, preview: {}...", 
-                    base64Preview.length(), 
-                    base64Preview.length() > 50 ? base64Preview.substring(0, 50) : base64Preview);
-        } catch (Exception e) {
-            log.warn("Could not encode image to base64 for logging: {}", e.getMessage());
-        }
-
-        Long patientId = getCurrentUserId();
+        Long patientId = currentUser.id();
         log.info("Processing emotion detection for patient ID: {}", patientId);
         
         EmotionResponse response = emotionService.createEmotionFromImage(patientId, imageFile);
@@ -91,10 +108,39 @@ public class EmotionController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Queue an image for emotion detection; returns 202 with a job ID to poll instead of blocking on the provider
+     */
+    @PostMapping(value = "/detect/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<DetectionJobResponse> submitEmotionDetection(
+            @RequestParam("image") MultipartFile imageFile,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        validateImageUpload(imageFile);
+
+        Long patientId = currentUser.id();
+        DetectionJobResponse job = emotionDetectionJobService.submit(patientId, imageFile);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/emotions/detect/jobs/{jobId}")
+                .buildAndExpand(job.getJobId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @GetMapping("/detect/jobs/{jobId}")
+    public ResponseEntity<DetectionJobResponse> getEmotionDetectionJob(
+            @PathVariable String jobId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long patientId = currentUser.id();
+        return ResponseEntity.ok(emotionDetectionJobService.getJob(jobId, patientId));
+    }
+
     @GetMapping("/patient/{patientId}")
-    public ResponseEntity<List<EmotionResponse>> getEmotionHistoryByPatientId(@PathVariable Long patientId) {
-        Long currentUserId = getCurrentUserId();
-        Role currentUserRole = getCurrentUserRole();
+    public ResponseEntity<List<EmotionResponse>> getEmotionHistoryByPatientId(
+            @PathVariable Long patientId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long currentUserId = currentUser.id();
+        Role currentUserRole = currentUser.role();
         
         List<EmotionResponse> emotions = emotionService.getEmotionHistoryByPatientId(
                 patientId, currentUserId, currentUserRole);
@@ -102,11 +148,60 @@ public class EmotionController {
         return ResponseEntity.ok(emotions);
     }
 
+    @GetMapping("/patient/{patientId}/page")
+    public ResponseEntity<CursorPageResponse<EmotionResponse>> getEmotionHistoryPage(
+            @PathVariable Long patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long currentUserId = currentUser.id();
+        Role currentUserRole = currentUser.role();
+
+        CursorPageResponse<EmotionResponse> page = emotionService.getEmotionHistoryPage(
+                patientId, currentUserId, currentUserRole, cursor, limit);
+
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Export the full emotion history as newline-delimited JSON, streamed row by row from the database
+     */
+    @GetMapping(value = "/patient/{patientId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEmotionHistory(
+            @PathVariable Long patientId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long currentUserId = currentUser.id();
+        Role currentUserRole = currentUser.role();
+
+        // Check access up front: once streaming starts the status can no longer be changed
+        emotionService.verifyHistoryAccess(patientId, currentUserId, currentUserRole);
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                emotionService.streamEmotionHistory(patientId, emotion -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(emotion));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/patient/{patientId}/statistics")
     public ResponseEntity<EmotionStatisticsResponse> getPatientStatistics(
-            @PathVariable Long patientId) {
-        Long currentUserId = getCurrentUserId();
-        Role currentUserRole = getCurrentUserRole();
+            @PathVariable Long patientId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long currentUserId = currentUser.id();
+        Role currentUserRole = currentUser.role();
         
         // Authorization check
         if (currentUserRole == Role.PATIENT && !patientId.equals(currentUserId)) {
@@ -120,27 +215,18 @@ public class EmotionController {
         return ResponseEntity.ok(statistics);
     }
 
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            return userRepository.findByEmail(email)
-                    .orElseThrow(() -> new EntityNotFoundException("User not found"))
-                    .getId();
+    private void validateImageUpload(MultipartFile imageFile) {
+        if (imageFile.isEmpty()) {
+            log.warn("Empty image file received");
+            throw new ValidationException("Image file is required");
         }
-        throw new BusinessException("User not authenticated");
-    }
 
-    private Role getCurrentUserRole() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new EntityNotFoundException("User not found"));
-            return user.getRole();
+        // Validate image type
+        String contentType = imageFile.getContentType();
+        if (contentType == null || !contentType.startsWith("image/")) {
+            log.warn("Invalid content type: {}", contentType);
+            throw new ValidationException("File must be an image");
         }
-        throw new BusinessException("User not authenticated");
     }
-
 }
 
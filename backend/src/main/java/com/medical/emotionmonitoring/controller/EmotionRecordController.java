@@ -3,15 +3,14 @@ package com.medical.emotionmonitoring.controller;
 import com.medical.emotionmonitoring.dto.EmotionRecordRequest;
 import com.medical.emotionmonitoring.dto.EmotionRecordResponse;
 import com.medical.emotionmonitoring.entity.EmotionType;
-import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
 import com.medical.emotionmonitoring.service.EmotionRecordService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -24,13 +23,13 @@ import java.util.List;
 public class EmotionRecordController {
 
     private final EmotionRecordService emotionRecordService;
-    private final UserRepository userRepository;
 
     @PostMapping
     public ResponseEntity<EmotionRecordResponse> createEmotionRecord(
-            @Valid @RequestBody EmotionRecordRequest request) {
+            @Valid @RequestBody EmotionRecordRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             EmotionRecordResponse response = emotionRecordService.createEmotionRecord(userId, request);
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (RuntimeException e) {
@@ -39,9 +38,11 @@ public class EmotionRecordController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<EmotionRecordResponse> getEmotionRecordById(@PathVariable Long id) {
+    public ResponseEntity<EmotionRecordResponse> getEmotionRecordById(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             EmotionRecordResponse response = emotionRecordService.getEmotionRecordById(id, userId);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
@@ -50,9 +51,10 @@ public class EmotionRecordController {
     }
 
     @GetMapping
-    public ResponseEntity<List<EmotionRecordResponse>> getAllEmotionRecords() {
+    public ResponseEntity<List<EmotionRecordResponse>> getAllEmotionRecords(
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             List<EmotionRecordResponse> responses = emotionRecordService.getAllEmotionRecordsByUserId(userId);
             return ResponseEntity.ok(responses);
         } catch (RuntimeException e) {
@@ -62,9 +64,10 @@ public class EmotionRecordController {
 
     @GetMapping("/type/{emotionType}")
     public ResponseEntity<List<EmotionRecordResponse>> getEmotionRecordsByType(
-            @PathVariable EmotionType emotionType) {
+            @PathVariable EmotionType emotionType,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             List<EmotionRecordResponse> responses = emotionRecordService.getEmotionRecordsByType(userId, emotionType);
             return ResponseEntity.ok(responses);
         } catch (RuntimeException e) {
@@ -75,9 +78,10 @@ public class EmotionRecordController {
     @GetMapping("/date-range")
     public ResponseEntity<List<EmotionRecordResponse>> getEmotionRecordsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             List<EmotionRecordResponse> responses = emotionRecordService.getEmotionRecordsByDateRange(
                     userId, startDate, endDate);
             return ResponseEntity.ok(responses);
@@ -89,9 +93,10 @@ public class EmotionRecordController {
     @PutMapping("/{id}")
     public ResponseEntity<EmotionRecordResponse> updateEmotionRecord(
             @PathVariable Long id,
-            @Valid @RequestBody EmotionRecordRequest request) {
+            @Valid @RequestBody EmotionRecordRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             EmotionRecordResponse response = emotionRecordService.updateEmotionRecord(id, userId, request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
@@ -100,25 +105,16 @@ public class EmotionRecordController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteEmotionRecord(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteEmotionRecord(
+            @PathVariable Long id,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long userId = getCurrentUserId();
+            Long userId = currentUser.id();
             emotionRecordService.deleteEmotionRecord(id, userId);
             return ResponseEntity.noContent().build();
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
     }
-
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            return userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"))
-                    .getId();
-        }
-        throw new RuntimeException("User not authenticated");
-    }
 }
 
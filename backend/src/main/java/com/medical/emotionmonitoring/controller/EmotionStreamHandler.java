@@ -0,0 +1,379 @@
+package com.medical.emotionmonitoring.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import com.medical.emotionmonitoring.dto.EmotionRequest;
+import com.medical.emotionmonitoring.dto.EmotionResponse;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
+import com.medical.emotionmonitoring.entity.Role;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
+import com.medical.emotionmonitoring.service.EmotionDetectionService;
+import com.medical.emotionmonitoring.service.EmotionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live emotion detection over a WebSocket at {@code /emotions/stream}, for patients.
+ *
+ * <p>The session is authenticated once, on the handshake; the client then sends camera frames (JPEG or
+ * PNG) as binary messages. At most {@code emotion.stream.frames-per-second} frames per session are
+ * detected, one at a time, on a bounded worker pool; frames arriving sooner, while the previous frame is
+ * still being detected, or when the pool is full are skipped, so clients can send at camera rate without
+ * building a backlog. Each detected frame is answered with a {@code frame} message. Frames are not
+ * stored one by one: every {@code persist-interval-seconds}, and when the session ends, the frames seen
+ * since the last reading are saved as one reading (the most frequent emotion at its mean confidence),
+ * which is answered with a {@code reading} message.
+ */
+@Slf4j
+@Component
+public class EmotionStreamHandler extends BinaryWebSocketHandler {
+
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+
+    private final EmotionDetectionService emotionDetectionService;
+    private final EmotionService emotionService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, StreamSession> sessions = new ConcurrentHashMap<>();
+    private final double framesPerSecond;
+    private final long frameIntervalNanos;
+    private final long persistIntervalSeconds;
+    private final long persistIntervalNanos;
+    private final int maxSessions;
+    private final Counter detectedFrames;
+    private final Counter skippedFrames;
+    private final Counter failedFrames;
+    private final Counter savedReadings;
+
+    public EmotionStreamHandler(
+            EmotionDetectionService emotionDetectionService,
+            EmotionService emotionService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${emotion.stream.frames-per-second:2}") double framesPerSecond,
+            @Value("${emotion.stream.persist-interval-seconds:10}") long persistIntervalSeconds,
+            @Value("${emotion.stream.max-sessions:200}") int maxSessions,
+            @Value("${emotion.stream.workers:4}") int workers,
+            @Value("${emotion.stream.queue-capacity:16}") int queueCapacity) {
+        this.emotionDetectionService = emotionDetectionService;
+        this.emotionService = emotionService;
+        this.objectMapper = objectMapper;
+        this.framesPerSecond = framesPerSecond;
+        this.frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        this.persistIntervalSeconds = persistIntervalSeconds;
+        this.persistIntervalNanos = TimeUnit.SECONDS.toNanos(persistIntervalSeconds);
+        this.maxSessions = maxSessions;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("emotion-stream-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("emotion.stream.sessions", sessions, Map::size)
+                .description("Open live emotion detection sessions")
+                .register(meterRegistry);
+        this.detectedFrames = frameCounter(meterRegistry, "detected");
+        this.skippedFrames = frameCounter(meterRegistry, "skipped");
+        this.failedFrames = frameCounter(meterRegistry, "failed");
+        this.savedReadings = Counter.builder("emotion.stream.readings")
+                .description("Readings saved from live emotion detection sessions")
+                .register(meterRegistry);
+    }
+
+    private static Counter frameCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("emotion.stream.frames")
+                .tag("result", result)
+                .description("Frames received on live emotion detection sessions by outcome")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Long patientId = patientId(session);
+        if (patientId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Only patients can stream frames"));
+            return;
+        }
+        if (sessions.size() >= maxSessions) {
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Too many live sessions, retry later"));
+            return;
+        }
+
+        StreamSession stream = new StreamSession(patientId,
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES));
+        sessions.put(session.getId(), stream);
+        send(stream, new SessionMessage("session", framesPerSecond, persistIntervalSeconds));
+        log.debug("Live emotion session {} opened for patient {}", session.getId(), patientId);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        StreamSession stream = sessions.get(session.getId());
+        if (stream == null) {
+            return;
+        }
+        long frame = stream.frames.incrementAndGet();
+        if (!stream.tryStartFrame(System.nanoTime(), frameIntervalNanos)) {
+            skippedFrames.increment();
+            return;
+        }
+
+        // The container may reuse the message buffer once this method returns
+        ByteBuffer payload = message.getPayload();
+        byte[] image = new byte[payload.remaining()];
+        payload.get(image);
+        try {
+            executor.execute(() -> detectFrame(stream, frame, image));
+        } catch (RejectedExecutionException e) {
+            stream.finishFrame();
+            skippedFrames.increment();
+        }
+    }
+
+    private void detectFrame(StreamSession stream, long frame, byte[] image) {
+        try {
+            EmotionDetectionResponse result =
+                    emotionDetectionService.detectEmotion(new ByteArrayResource(image), image.length);
+            EmotionTypeEnum emotionType = emotionDetectionService.mapToEmotionTypeEnum(result.getEmotion());
+            double confidence = result.getConfidence() != null ? result.getConfidence() : 0.0;
+            detectedFrames.increment();
+            // Mock results (no provider available) are shown but never saved
+            if (!result.isFallback()) {
+                stream.record(emotionType, confidence);
+            }
+            send(stream, new FrameMessage("frame", frame, emotionType, confidence));
+        } catch (TooManyRequestsException e) {
+            skippedFrames.increment();
+        } catch (RuntimeException e) {
+            failedFrames.increment();
+            log.warn("Live emotion detection failed for patient {}: {}", stream.patientId, e.getMessage());
+        } finally {
+            stream.finishFrame();
+        }
+
+        if (stream.closed) {
+            saveReading(stream, true);
+        } else if (stream.readingDue(System.nanoTime(), persistIntervalNanos)) {
+            saveReading(stream, false);
+        }
+    }
+
+    /**
+     * Save the frames aggregated since the last reading, if any; {@code closing} skips the reply
+     */
+    private void saveReading(StreamSession stream, boolean closing) {
+        EmotionRequest reading = stream.takeReading(System.nanoTime());
+        if (reading == null) {
+            return;
+        }
+        try {
+            EmotionResponse saved = emotionService.createEmotion(stream.patientId, reading);
+            savedReadings.increment();
+            if (!closing) {
+                send(stream, new ReadingMessage("reading", saved));
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not save live emotion reading for patient {}: {}", stream.patientId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        StreamSession stream = sessions.remove(session.getId());
+        if (stream == null) {
+            return;
+        }
+        // A frame still being detected saves its own result once it finishes
+        stream.closed = true;
+        saveReading(stream, true);
+        log.debug("Live emotion session {} closed ({}) after {} frames", session.getId(), status, stream.frames.get());
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Live emotion session {} transport error: {}", session.getId(), exception.getMessage());
+    }
+
+    private void send(StreamSession stream, Object message) {
+        if (!stream.session.isOpen()) {
+            return;
+        }
+        try {
+            stream.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize live emotion message", e);
+        } catch (IOException | IllegalStateException e) {
+            // Client gone or too slow to read; the session is closed by the decorator or the container
+            log.debug("Could not send to live emotion session {}: {}", stream.session.getId(), e.getMessage());
+        }
+    }
+
+    private static Long patientId(WebSocketSession session) {
+        if (session.getPrincipal() instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof AuthenticatedUser user
+                && user.role() == Role.PATIENT) {
+            return user.id();
+        }
+        return null;
+    }
+
+    /**
+     * Stop detecting, save what every open session has aggregated, and close the sessions
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+        for (StreamSession stream : sessions.values()) {
+            stream.closed = true;
+            saveReading(stream, true);
+            try {
+                stream.session.close(CloseStatus.GOING_AWAY);
+            } catch (IOException e) {
+                log.debug("Could not close live emotion session {}: {}", stream.session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Per-connection state: the sampling clock, the in-flight flag and the frames aggregated for the next reading
+     */
+    private static final class StreamSession {
+
+        private final Long patientId;
+        private final WebSocketSession session;
+        private final AtomicLong frames = new AtomicLong();
+        private final AtomicBoolean detecting = new AtomicBoolean();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<EmotionTypeEnum, Aggregate> window = new EnumMap<>(EmotionTypeEnum.class);
+        private volatile boolean closed;
+        private long nextFrameAt;
+        private long windowStartedAt;
+        private LocalDateTime lastFrameAt;
+
+        StreamSession(Long patientId, WebSocketSession session) {
+            this.patientId = patientId;
+            this.session = session;
+            this.nextFrameAt = System.nanoTime();
+            this.windowStartedAt = nextFrameAt;
+        }
+
+        /**
+         * Called on the container thread, which delivers one session's messages in order
+         */
+        boolean tryStartFrame(long now, long frameIntervalNanos) {
+            if (now - nextFrameAt < 0 || !detecting.compareAndSet(false, true)) {
+                return false;
+            }
+            nextFrameAt = now + frameIntervalNanos;
+            return true;
+        }
+
+        void finishFrame() {
+            detecting.set(false);
+        }
+
+        void record(EmotionTypeEnum emotionType, double confidence) {
+            lock.lock();
+            try {
+                window.computeIfAbsent(emotionType, type -> new Aggregate()).add(confidence);
+                lastFrameAt = LocalDateTime.now();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean readingDue(long now, long persistIntervalNanos) {
+            lock.lock();
+            try {
+                return !window.isEmpty() && now - windowStartedAt >= persistIntervalNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * The most frequent emotion of the window at its mean confidence, or null if no frame was
+         * recorded; starts the next window
+         */
+        EmotionRequest takeReading(long now) {
+            lock.lock();
+            try {
+                windowStartedAt = now;
+                if (window.isEmpty()) {
+                    return null;
+                }
+                Map.Entry<EmotionTypeEnum, Aggregate> dominant = null;
+                for (Map.Entry<EmotionTypeEnum, Aggregate> entry : window.entrySet()) {
+                    if (dominant == null || entry.getValue().count > dominant.getValue().count) {
+                        dominant = entry;
+                    }
+                }
+                EmotionRequest reading = new EmotionRequest(
+                        dominant.getKey(), dominant.getValue().meanConfidence(), lastFrameAt);
+                window.clear();
+                return reading;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Aggregate {
+
+        private int count;
+        private double confidenceSum;
+
+        void add(double confidence) {
+            count++;
+            confidenceSum += confidence;
+        }
+
+        double meanConfidence() {
+            return confidenceSum / count;
+        }
+    }
+
+    private record SessionMessage(String type, double framesPerSecond, long persistIntervalSeconds) {
+    }
+
+    private record FrameMessage(String type, long frame, EmotionTypeEnum emotion, double confidence) {
+    }
+
+    private record ReadingMessage(String type, EmotionResponse reading) {
+    }
+}
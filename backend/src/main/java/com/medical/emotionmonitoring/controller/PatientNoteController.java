@@ -3,13 +3,13 @@ package com.medical.emotionmonitoring.controller;
 import com.medical.emotionmonitoring.dto.ErrorResponse;
 import com.medical.emotionmonitoring.dto.PatientNoteRequest;
 import com.medical.emotionmonitoring.dto.PatientNoteResponse;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
 import com.medical.emotionmonitoring.service.PatientNoteService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -21,14 +21,14 @@ import java.util.List;
 public class PatientNoteController {
 
     private final PatientNoteService patientNoteService;
-    private final com.medical.emotionmonitoring.repository.UserRepository userRepository;
 
     @PostMapping("/patient/{patientId}")
     public ResponseEntity<?> createNote(
             @PathVariable Long patientId,
-            @Valid @RequestBody PatientNoteRequest request) {
+            @Valid @RequestBody PatientNoteRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             PatientNoteResponse response = patientNoteService.createNote(patientId, doctorId, request);
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (RuntimeException e) {
@@ -41,10 +41,12 @@ public class PatientNoteController {
     }
 
     @GetMapping("/patient/{patientId}")
-    public ResponseEntity<?> getNotesByPatientId(@PathVariable Long patientId) {
+    public ResponseEntity<?> getNotesByPatientId(
+            @PathVariable Long patientId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long currentUserId = getCurrentUserId();
-            com.medical.emotionmonitoring.entity.Role currentUserRole = getCurrentUserRole();
+            Long currentUserId = currentUser.id();
+            com.medical.emotionmonitoring.entity.Role currentUserRole = currentUser.role();
             
             List<PatientNoteResponse> notes = patientNoteService.getNotesByPatientId(
                     patientId, currentUserId, currentUserRole);
@@ -60,9 +62,11 @@ public class PatientNoteController {
     }
 
     @GetMapping("/doctor/{doctorId}")
-    public ResponseEntity<?> getNotesByDoctorId(@PathVariable Long doctorId) {
+    public ResponseEntity<?> getNotesByDoctorId(
+            @PathVariable Long doctorId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long currentUserId = getCurrentUserId();
+            Long currentUserId = currentUser.id();
             
             // Only doctors can view their own notes
             if (!doctorId.equals(currentUserId)) {
@@ -81,9 +85,10 @@ public class PatientNoteController {
     @PutMapping("/{noteId}")
     public ResponseEntity<?> updateNote(
             @PathVariable Long noteId,
-            @Valid @RequestBody PatientNoteRequest request) {
+            @Valid @RequestBody PatientNoteRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             PatientNoteResponse response = patientNoteService.updateNote(noteId, doctorId, request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
@@ -96,9 +101,11 @@ public class PatientNoteController {
     }
 
     @DeleteMapping("/{noteId}")
-    public ResponseEntity<?> deleteNote(@PathVariable Long noteId) {
+    public ResponseEntity<?> deleteNote(
+            @PathVariable Long noteId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             patientNoteService.deleteNote(noteId, doctorId);
             return ResponseEntity.ok(new java.util.HashMap<String, String>() {{
                 put("message", "Note deleted successfully");
@@ -111,28 +118,6 @@ public class PatientNoteController {
                     .body(new ErrorResponse("An error occurred while deleting note"));
         }
     }
-
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            return userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"))
-                    .getId();
-        }
-        throw new RuntimeException("User not authenticated");
-    }
-
-    private com.medical.emotionmonitoring.entity.Role getCurrentUserRole() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            com.medical.emotionmonitoring.entity.User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            return user.getRole();
-        }
-        throw new RuntimeException("User not authenticated");
-    }
 }
 
 
@@ -3,13 +3,13 @@ package com.medical.emotionmonitoring.controller;
 import com.medical.emotionmonitoring.dto.ErrorResponse;
 import com.medical.emotionmonitoring.dto.PatientTagRequest;
 import com.medical.emotionmonitoring.dto.PatientTagResponse;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
 import com.medical.emotionmonitoring.service.PatientTagService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -21,14 +21,14 @@ import java.util.List;
 public class PatientTagController {
 
     private final PatientTagService patientTagService;
-    private final com.medical.emotionmonitoring.repository.UserRepository userRepository;
 
     @PostMapping("/patient/{patientId}")
     public ResponseEntity<?> addTag(
             @PathVariable Long patientId,
-            @Valid @RequestBody PatientTagRequest request) {
+            @Valid @RequestBody PatientTagRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             PatientTagResponse response = patientTagService.addTag(patientId, doctorId, request);
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
         } catch (RuntimeException e) {
@@ -54,9 +54,10 @@ public class PatientTagController {
     @GetMapping("/patient/{patientId}/doctor/{doctorId}")
     public ResponseEntity<?> getTagsByPatientIdAndDoctorId(
             @PathVariable Long patientId,
-            @PathVariable Long doctorId) {
+            @PathVariable Long doctorId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long currentUserId = getCurrentUserId();
+            Long currentUserId = currentUser.id();
             
             // Only doctors can view tags, and only their own tags
             if (!doctorId.equals(currentUserId)) {
@@ -75,9 +76,10 @@ public class PatientTagController {
     @DeleteMapping("/patient/{patientId}/tag/{tag}")
     public ResponseEntity<?> removeTag(
             @PathVariable Long patientId,
-            @PathVariable String tag) {
+            @PathVariable String tag,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             patientTagService.removeTag(patientId, doctorId, tag);
             return ResponseEntity.ok(new java.util.HashMap<String, String>() {{
                 put("message", "Tag removed successfully");
@@ -92,9 +94,11 @@ public class PatientTagController {
     }
 
     @DeleteMapping("/{tagId}")
-    public ResponseEntity<?> removeTagById(@PathVariable Long tagId) {
+    public ResponseEntity<?> removeTagById(
+            @PathVariable Long tagId,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Long doctorId = getCurrentUserId();
+            Long doctorId = currentUser.id();
             patientTagService.removeTagById(tagId, doctorId);
             return ResponseEntity.ok(new java.util.HashMap<String, String>() {{
                 put("message", "Tag removed successfully");
@@ -107,17 +111,6 @@ public class PatientTagController {
                     .body(new ErrorResponse("An error occurred while removing tag"));
         }
     }
-
-    private Long getCurrentUserId() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof org.springframework.security.core.userdetails.UserDetails) {
-            String email = ((org.springframework.security.core.userdetails.UserDetails) authentication.getPrincipal()).getUsername();
-            return userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"))
-                    .getId();
-        }
-        throw new RuntimeException("User not authenticated");
-    }
 }
 
 
@@ -1,12 +1,14 @@
 package com.medical.emotionmonitoring.controller;
 
 import com.medical.emotionmonitoring.dto.UserResponse;
+import com.medical.emotionmonitoring.security.AuthenticatedUser;
 import com.medical.emotionmonitoring.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -62,17 +64,14 @@ public class UserController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser() {
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             // Get current authenticated user
-            org.springframework.security.core.Authentication authentication = 
-                    org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
             
-            String email = authentication.getName();
-            UserResponse response = userService.getUserByEmail(email);
+            UserResponse response = userService.getUserById(currentUser.id());
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -83,16 +82,15 @@ public class UserController {
     }
 
     @PutMapping("/me")
-    public ResponseEntity<?> updateCurrentUser(@Valid @RequestBody com.medical.emotionmonitoring.dto.UpdateProfileRequest request) {
+    public ResponseEntity<?> updateCurrentUser(
+            @Valid @RequestBody com.medical.emotionmonitoring.dto.UpdateProfileRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            org.springframework.security.core.Authentication authentication = 
-                    org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
             
-            String email = authentication.getName();
-            UserResponse response = userService.updateUserProfile(email, request);
+            UserResponse response = userService.updateUserProfile(currentUser.getUsername(), request);
             return ResponseEntity.ok(response);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -104,19 +102,20 @@ public class UserController {
     }
 
     @PutMapping("/me/password")
-    public ResponseEntity<?> changePassword(@Valid @RequestBody com.medical.emotionmonitoring.dto.ChangePasswordRequest request) {
+    public ResponseEntity<?> changePassword(
+            @Valid @RequestBody com.medical.emotionmonitoring.dto.ChangePasswordRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            org.springframework.security.core.Authentication authentication = 
-                    org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
             
-            String email = authentication.getName();
-            userService.changePassword(email, request.getCurrentPassword(), request.getNewPassword());
+            userService.changePassword(currentUser.getUsername(), request.getCurrentPassword(), request.getNewPassword());
             return ResponseEntity.ok(new java.util.HashMap<String, String>() {{
                 put("message", "Password changed successfully");
             }});
+        } catch (com.medical.emotionmonitoring.exception.TooManyRequestsException e) {
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new com.medical.emotionmonitoring.dto.ErrorResponse(e.getMessage()));
@@ -168,17 +167,14 @@ public class UserController {
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<?> updatePatientInfo(
             @PathVariable Long patientId,
-            @Valid @RequestBody com.medical.emotionmonitoring.dto.UpdatePatientRequest request) {
+            @Valid @RequestBody com.medical.emotionmonitoring.dto.UpdatePatientRequest request,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            org.springframework.security.core.Authentication authentication = 
-                    org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null) {
+            if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
             
-            String email = authentication.getName();
-            com.medical.emotionmonitoring.dto.UserResponse currentUser = userService.getUserByEmail(email);
-            Long doctorId = currentUser.getId();
+            Long doctorId = currentUser.id();
             
             com.medical.emotionmonitoring.dto.UserResponse response = 
                     userService.updatePatientInfo(patientId, doctorId, request);
@@ -0,0 +1,23 @@
+package com.medical.emotionmonitoring.dto;
+
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Alerts to mark as read: the listed ids, every alert created at or before {@code before}, or both
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertAcknowledgeRequest {
+
+    @Size(max = 1000, message = "At most 1000 alert ids can be acknowledged at once")
+    private List<Long> alertIds;
+
+    private LocalDateTime before;
+}
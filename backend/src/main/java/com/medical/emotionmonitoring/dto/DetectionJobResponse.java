@@ -0,0 +1,28 @@
+package com.medical.emotionmonitoring.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DetectionJobResponse {
+    private String jobId;
+    private Status status;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    private EmotionResponse emotion; // set once the job has completed
+    private String error; // set if the job failed
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,23 @@
+package com.medical.emotionmonitoring.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Readings uploaded together, e.g. the backlog of a device that was offline
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmotionBatchRequest {
+
+    @NotEmpty(message = "At least one emotion is required")
+    @Size(max = 5000, message = "At most 5000 emotions can be uploaded at once")
+    private List<@Valid EmotionRequest> emotions;
+}
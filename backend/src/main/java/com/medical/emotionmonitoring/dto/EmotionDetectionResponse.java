@@ -1,5 +1,6 @@
 package com.medical.emotionmonitoring.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,5 +14,8 @@ public class EmotionDetectionResponse {
     private String emotion;
     private Double confidence;
     private Map<String, Double> emotions; // All detected emotions with confidence scores
+
+    @JsonIgnore
+    private boolean fallback; // Mock result used because the provider was unavailable; never cached
 }
 
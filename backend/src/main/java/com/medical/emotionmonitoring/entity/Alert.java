@@ -8,7 +8,13 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "alerts")
+@Table(name = "alerts", indexes = {
+    @Index(name = "idx_alerts_patient_kind_created", columnList = "patient_id, kind, emotion_type, created_at"),
+    @Index(name = "idx_alerts_doctor_created", columnList = "doctor_id, created_at, id"),
+    @Index(name = "idx_alerts_doctor_read_created", columnList = "doctor_id, is_read, created_at, id"),
+    @Index(name = "idx_alerts_patient_created", columnList = "patient_id, created_at"),
+    @Index(name = "idx_alerts_patient_read_created", columnList = "patient_id, is_read, created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,6 +30,15 @@ public class Alert {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // Nullable for alerts created before kinds were introduced
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind")
+    private AlertKind kind;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "emotion_type")
+    private EmotionTypeEnum emotionType;
+
     @Column(name = "is_read", nullable = false)
     private Boolean isRead = false;
 
@@ -0,0 +1,6 @@
+package com.medical.emotionmonitoring.entity;
+
+public enum AlertKind {
+    EMOTION_DETECTED,
+    EMOTION_PATTERN
+}
@@ -0,0 +1,57 @@
+package com.medical.emotionmonitoring.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Per-patient, per-day aggregate of emotion readings, maintained incrementally on insert
+ * so that statistics never need to load the raw emotion history
+ */
+@Entity
+@Table(name = "emotion_daily_rollups", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_emotion_rollups_patient_date", columnNames = {"user_id", "bucket_date"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmotionDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User patient;
+
+    @Column(name = "bucket_date", nullable = false)
+    private LocalDate bucketDate;
+
+    @Column(name = "happy_count", nullable = false)
+    private Long happyCount = 0L;
+
+    @Column(name = "sad_count", nullable = false)
+    private Long sadCount = 0L;
+
+    @Column(name = "angry_count", nullable = false)
+    private Long angryCount = 0L;
+
+    @Column(name = "fear_count", nullable = false)
+    private Long fearCount = 0L;
+
+    @Column(name = "neutral_count", nullable = false)
+    private Long neutralCount = 0L;
+
+    @Column(name = "negative_count", nullable = false)
+    private Long negativeCount = 0L; // SAD + ANGRY + FEAR
+
+    @Column(name = "total_count", nullable = false)
+    private Long totalCount = 0L;
+
+    @Column(name = "confidence_sum", nullable = false)
+    private Double confidenceSum = 0.0;
+}
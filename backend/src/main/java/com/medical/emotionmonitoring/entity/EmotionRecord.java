@@ -8,7 +8,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "emotion_records")
+@Table(name = "emotion_records", indexes = {
+    @Index(name = "idx_emotion_records_user_recorded", columnList = "user_id, recorded_at"),
+    @Index(name = "idx_emotion_records_user_type", columnList = "user_id, emotion_type")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -8,7 +8,11 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "patient_notes")
+@Table(name = "patient_notes", indexes = {
+    @Index(name = "idx_patient_notes_patient_doctor_created", columnList = "patient_id, doctor_id, created_at"),
+    @Index(name = "idx_patient_notes_patient_created", columnList = "patient_id, created_at"),
+    @Index(name = "idx_patient_notes_doctor_created", columnList = "doctor_id, created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -8,7 +8,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "patient_tags")
+@Table(name = "patient_tags", indexes = {
+    @Index(name = "idx_patient_tags_patient_doctor_tag", columnList = "patient_id, doctor_id, tag")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,17 @@
+package com.medical.emotionmonitoring.exception;
+
+/**
+ * Thrown when a bounded resource (queue, worker pool) is saturated; mapped to HTTP 429
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,14 +1,22 @@
 package com.medical.emotionmonitoring.repository;
 
+import com.medical.emotionmonitoring.dto.AlertResponse;
 import com.medical.emotionmonitoring.entity.Alert;
+import com.medical.emotionmonitoring.entity.AlertKind;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
 import com.medical.emotionmonitoring.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AlertRepository extends JpaRepository<Alert, Long> {
@@ -28,6 +36,12 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
     List<Alert> findByDoctorIdAndIsReadFalse(Long doctorId);
     
     List<Alert> findByPatientIdAndIsReadFalse(Long patientId);
+
+    /**
+     * Alerts a doctor missed after the given alert id, oldest first (used to resume alert streams)
+     */
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    List<Alert> findTop100ByDoctorIdAndIdGreaterThanOrderByIdAsc(Long doctorId, Long id);
     
     @Query("SELECT a FROM Alert a WHERE a.doctor.id = :doctorId AND a.isRead = false ORDER BY a.createdAt DESC")
     List<Alert> findUnreadAlertsByDoctorId(@Param("doctorId") Long doctorId);
@@ -51,8 +65,68 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
     
     @Query("SELECT COUNT(a) FROM Alert a WHERE a.doctor.id = :doctorId AND a.isRead = false")
     Long countUnreadAlertsByDoctorId(@Param("doctorId") Long doctorId);
+
+    /**
+     * Unread alert count per doctor as (doctorId, count) rows; doctors with none are omitted
+     */
+    @Query("SELECT a.doctor.id, COUNT(a) FROM Alert a WHERE a.isRead = false GROUP BY a.doctor.id")
+    List<Object[]> countUnreadAlertsGroupedByDoctorId();
+
+    @Query("SELECT a.doctor.id FROM Alert a WHERE a.id = :alertId")
+    Optional<Long> findDoctorIdById(@Param("alertId") Long alertId);
+
+    /**
+     * Mark the alert read if it is not already; returns 1 only for the call that changed it
+     */
+    @Modifying
+    @Query("UPDATE Alert a SET a.isRead = true WHERE a.id = :alertId AND a.isRead = false")
+    int markAsReadIfUnread(@Param("alertId") Long alertId);
+
+    @Modifying
+    @Query("UPDATE Alert a SET a.isRead = true " +
+           "WHERE a.doctor.id = :doctorId AND a.id IN :alertIds AND a.isRead = false")
+    int markAsReadByIds(@Param("doctorId") Long doctorId, @Param("alertIds") Collection<Long> alertIds);
+
+    @Modifying
+    @Query("UPDATE Alert a SET a.isRead = true " +
+           "WHERE a.doctor.id = :doctorId AND a.createdAt <= :before AND a.isRead = false")
+    int markAsReadCreatedBefore(@Param("doctorId") Long doctorId, @Param("before") LocalDateTime before);
+
+    // Inbox pages are projected straight into AlertResponse, so patient and doctor names come from the join
+    @Query("SELECT new com.medical.emotionmonitoring.dto.AlertResponse(" +
+           "a.id, a.message, a.createdAt, a.isRead, p.id, p.fullName, d.id, d.fullName) " +
+           "FROM Alert a JOIN a.patient p JOIN a.doctor d " +
+           "WHERE d.id = :doctorId AND (:unreadOnly = false OR a.isRead = false) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AlertResponse> findInboxPage(
+        @Param("doctorId") Long doctorId,
+        @Param("unreadOnly") boolean unreadOnly,
+        Pageable pageable
+    );
+
+    @Query("SELECT new com.medical.emotionmonitoring.dto.AlertResponse(" +
+           "a.id, a.message, a.createdAt, a.isRead, p.id, p.fullName, d.id, d.fullName) " +
+           "FROM Alert a JOIN a.patient p JOIN a.doctor d " +
+           "WHERE d.id = :doctorId AND (:unreadOnly = false OR a.isRead = false) " +
+           "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AlertResponse> findInboxPageBeforeCursor(
+        @Param("doctorId") Long doctorId,
+        @Param("unreadOnly") boolean unreadOnly,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") Long id,
+        Pageable pageable
+    );
     
     @Query("SELECT COUNT(a) FROM Alert a WHERE a.patient.id = :patientId AND a.isRead = false")
     Long countUnreadAlertsByPatientId(@Param("patientId") Long patientId);
+    
+    @Query("SELECT MAX(a.createdAt) FROM Alert a WHERE a.patient.id = :patientId AND a.kind = :kind " +
+           "AND a.emotionType = :emotionType AND a.createdAt > :since")
+    LocalDateTime findLatestCreatedAtByPatientIdAndKindSince(
+        @Param("patientId") Long patientId,
+        @Param("kind") AlertKind kind,
+        @Param("emotionType") EmotionTypeEnum emotionType,
+        @Param("since") LocalDateTime since
+    );
 }
-
@@ -0,0 +1,74 @@
+package com.medical.emotionmonitoring.repository;
+
+import com.medical.emotionmonitoring.entity.EmotionDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface EmotionDailyRollupRepository extends JpaRepository<EmotionDailyRollup, Long> {
+
+    List<EmotionDailyRollup> findByPatientIdAndBucketDateGreaterThanEqual(Long patientId, LocalDate fromDate);
+
+    @Query("SELECT SUM(r.happyCount) AS happyCount, SUM(r.sadCount) AS sadCount, SUM(r.angryCount) AS angryCount, " +
+           "SUM(r.fearCount) AS fearCount, SUM(r.neutralCount) AS neutralCount, SUM(r.negativeCount) AS negativeCount, " +
+           "SUM(r.totalCount) AS totalCount, SUM(r.confidenceSum) AS confidenceSum " +
+           "FROM EmotionDailyRollup r WHERE r.patient.id = :patientId")
+    RollupTotals sumByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Atomically add the given deltas to the patient's bucket for the day, creating it if needed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO emotion_daily_rollups (user_id, bucket_date, happy_count, sad_count, angry_count, " +
+                   "fear_count, neutral_count, negative_count, total_count, confidence_sum) " +
+                   "VALUES (:patientId, :bucketDate, :happy, :sad, :angry, :fear, :neutral, :negative, :total, :confidenceSum) " +
+                   "ON DUPLICATE KEY UPDATE happy_count = happy_count + VALUES(happy_count), " +
+                   "sad_count = sad_count + VALUES(sad_count), angry_count = angry_count + VALUES(angry_count), " +
+                   "fear_count = fear_count + VALUES(fear_count), neutral_count = neutral_count + VALUES(neutral_count), " +
+                   "negative_count = negative_count + VALUES(negative_count), total_count = total_count + VALUES(total_count), " +
+                   "confidence_sum = confidence_sum + VALUES(confidence_sum)",
+           nativeQuery = true)
+    void upsertDelta(
+        @Param("patientId") Long patientId,
+        @Param("bucketDate") LocalDate bucketDate,
+        @Param("happy") long happy,
+        @Param("sad") long sad,
+        @Param("angry") long angry,
+        @Param("fear") long fear,
+        @Param("neutral") long neutral,
+        @Param("negative") long negative,
+        @Param("total") long total,
+        @Param("confidenceSum") double confidenceSum
+    );
+
+    /**
+     * Build rollups from the raw emotions table; only meant to run once against an empty rollup table
+     */
+    @Modifying
+    @Query(value = "INSERT INTO emotion_daily_rollups (user_id, bucket_date, happy_count, sad_count, angry_count, " +
+                   "fear_count, neutral_count, negative_count, total_count, confidence_sum) " +
+                   "SELECT e.user_id, DATE(e.`timestamp`), " +
+                   "SUM(e.emotion_type = 'HAPPY'), SUM(e.emotion_type = 'SAD'), SUM(e.emotion_type = 'ANGRY'), " +
+                   "SUM(e.emotion_type = 'FEAR'), SUM(e.emotion_type = 'NEUTRAL'), " +
+                   "SUM(e.emotion_type IN ('SAD', 'ANGRY', 'FEAR')), COUNT(*), SUM(e.confidence) " +
+                   "FROM emotions e GROUP BY e.user_id, DATE(e.`timestamp`)",
+           nativeQuery = true)
+    int backfillFromEmotions();
+
+    interface RollupTotals {
+        Long getHappyCount();
+        Long getSadCount();
+        Long getAngryCount();
+        Long getFearCount();
+        Long getNeutralCount();
+        Long getNegativeCount();
+        Long getTotalCount();
+        Double getConfidenceSum();
+    }
+}
@@ -3,13 +3,20 @@ package com.medical.emotionmonitoring.repository;
 import com.medical.emotionmonitoring.entity.Emotion;
 import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
 import com.medical.emotionmonitoring.entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface EmotionRepository extends JpaRepository<Emotion, Long> {
@@ -20,6 +27,26 @@ public interface EmotionRepository extends JpaRepository<Emotion, Long> {
     
     List<Emotion> findByPatientIdOrderByTimestampDesc(Long patientId);
     
+    List<Emotion> findByPatientIdOrderByTimestampDescIdDesc(Long patientId, Pageable pageable);
+    
+    @Query("SELECT e FROM Emotion e WHERE e.patient.id = :patientId " +
+           "AND (e.timestamp < :timestamp OR (e.timestamp = :timestamp AND e.id < :id)) " +
+           "ORDER BY e.timestamp DESC, e.id DESC")
+    List<Emotion> findByPatientIdBeforeCursor(
+        @Param("patientId") Long patientId,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+    
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows one by one instead of buffering the result set
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM Emotion e WHERE e.patient.id = :patientId ORDER BY e.timestamp DESC, e.id DESC")
+    Stream<Emotion> streamByPatientId(@Param("patientId") Long patientId);
+    
     List<Emotion> findByPatientIdAndEmotionType(Long patientId, EmotionTypeEnum emotionType);
     
     @Query("SELECT e FROM Emotion e WHERE e.patient.id = :patientId AND e.timestamp BETWEEN :startDate AND :endDate ORDER BY e.timestamp DESC")
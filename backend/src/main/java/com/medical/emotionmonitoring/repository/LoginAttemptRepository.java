@@ -4,12 +4,14 @@ import com.medical.emotionmonitoring.entity.LoginAttempt;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long> {
     Optional<LoginAttempt> findByEmail(String email);
     void deleteByEmail(String email);
+    List<LoginAttempt> findByIsLockedTrue();
 }
 
 
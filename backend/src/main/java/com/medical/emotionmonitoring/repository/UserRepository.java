@@ -1,14 +1,35 @@
 package com.medical.emotionmonitoring.repository;
 
+import com.medical.emotionmonitoring.entity.Role;
 import com.medical.emotionmonitoring.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByEmail(String email);
-}
 
+    @Query("SELECT d.id FROM User d JOIN d.assignedPatients p WHERE p.id = :patientId AND d.role = :role ORDER BY d.id")
+    List<Long> findAssignedDoctorIdsByPatientId(
+        @Param("patientId") Long patientId,
+        @Param("role") Role role,
+        Pageable pageable
+    );
+
+    @Query("SELECT CASE WHEN u.isEnabled = true AND u.isAccountNonLocked = true THEN true ELSE false END " +
+           "FROM User u WHERE u.id = :id")
+    Optional<Boolean> findActiveById(@Param("id") Long id);
+
+    @Query("SELECT MIN(u.id) FROM User u WHERE u.role = :role")
+    Long findFirstIdByRole(@Param("role") Role role);
+
+    @Query("SELECT u.fullName FROM User u WHERE u.id = :id")
+    Optional<String> findFullNameById(@Param("id") Long id);
+}
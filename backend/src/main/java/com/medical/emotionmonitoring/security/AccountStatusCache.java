@@ -0,0 +1,64 @@
+package com.medical.emotionmonitoring.security;
+
+import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Short-lived cache of whether a user may still act on an issued token (exists, enabled, not locked).
+ * Tokens are otherwise trusted until they expire; this bounds how long a deleted, disabled or locked
+ * account keeps working to the cache TTL while costing at most one query per user per TTL.
+ */
+@Component
+public class AccountStatusCache {
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final BoundedCache<Long, Boolean> activeUsers;
+
+    public AccountStatusCache(
+            UserRepository userRepository,
+            @Value("${security.account-status.check-enabled:true}") boolean enabled,
+            @Value("${security.account-status.max-entries:10000}") int maxEntries,
+            @Value("${security.account-status.ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.activeUsers = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Check whether the account is still active; always true when the check is disabled
+     */
+    public boolean isActive(Long userId) {
+        if (!enabled) {
+            return true;
+        }
+        Boolean active = activeUsers.get(userId);
+        if (active == null) {
+            active = userRepository.findActiveById(userId).orElse(false);
+            activeUsers.put(userId, active);
+        }
+        return active;
+    }
+
+    /**
+     * Forget the cached status once the surrounding transaction commits, e.g. after locking the account
+     */
+    public void evict(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            activeUsers.remove(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                activeUsers.remove(userId);
+            }
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.medical.emotionmonitoring.security;
+
+import com.medical.emotionmonitoring.entity.Role;
+import com.medical.emotionmonitoring.entity.User;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal of a JWT-authenticated request, built from the token's userId and role claims so
+ * controllers get the caller's id and role without loading the user. Inject it with
+ * {@code @AuthenticationPrincipal AuthenticatedUser currentUser}.
+ */
+public record AuthenticatedUser(Long id, String email, Role role) implements UserDetails {
+
+    /**
+     * Build the principal from verified claims; returns null if the token predates the userId/role claims
+     */
+    public static AuthenticatedUser fromClaims(Claims claims) {
+        Object userId = claims.get("userId");
+        Object role = claims.get("role");
+        if (!(userId instanceof Number id) || !(role instanceof String roleName) || claims.getSubject() == null) {
+            return null;
+        }
+        try {
+            return new AuthenticatedUser(id.longValue(), claims.getSubject(), Role.valueOf(roleName));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static AuthenticatedUser fromUser(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getRole());
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.medical.emotionmonitoring.security;
+
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt run on a small dedicated pool instead of the request thread. At most
+ * {@code security.password.workers} hashes run at once and {@code security.password.queue-capacity}
+ * wait; beyond that the request is rejected with 429, so a login storm holds a bounded number of
+ * request threads and CPU cores and the emotion endpoints keep being served.
+ *
+ * <p>The cost factor is {@code security.password.bcrypt-strength}, or, when
+ * {@code security.password.target-hash-ms} is set, the highest strength from there whose measured
+ * hash time stays within the target. Stored hashes with a lower cost are re-encoded on the next
+ * successful login (see {@link CustomUserDetailsService#updatePassword}).
+ */
+@Slf4j
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final int MAX_STRENGTH = 16;
+
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${security.password.bcrypt-strength:10}") int strength,
+            @Value("${security.password.target-hash-ms:0}") long targetHashMillis,
+            @Value("${security.password.workers:0}") int workers,
+            @Value("${security.password.queue-capacity:32}") int queueCapacity,
+            @Value("${security.password.retry-after-seconds:1}") long retryAfterSeconds) {
+        int poolSize = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        warmUp();
+        int cost = targetHashMillis > 0 ? calibrate(strength, targetHashMillis) : strength;
+        this.delegate = new BCryptPasswordEncoder(cost);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.encodeTimer = Timer.builder("security.password.hash")
+                .tag("operation", "encode")
+                .description("Time to hash or verify a password, including queueing")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("security.password.hash")
+                .tag("operation", "matches")
+                .description("Time to hash or verify a password, including queueing")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("security.password.rejected")
+                .description("Password operations shed because the hashing queue was full")
+                .register(meterRegistry);
+
+        log.info("Password hashing: bcrypt strength {} ({} ms per hash), {} workers, queue {}",
+                cost, measure(cost), poolSize, queueCapacity);
+    }
+
+    /**
+     * Run a few cheap hashes first so the measurements below are not dominated by JIT compilation
+     */
+    private static void warmUp() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        for (int i = 0; i < 20; i++) {
+            encoder.encode("warm-up");
+        }
+    }
+
+    /**
+     * Each strength step doubles the work, so stop before the next step would exceed the target
+     */
+    private static int calibrate(int minStrength, long targetHashMillis) {
+        int strength = minStrength;
+        while (strength < MAX_STRENGTH && measure(strength) * 2 <= targetHashMillis) {
+            strength++;
+        }
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return encodeTimer.record(() -> run(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return matchesTimer.record(() -> run(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * True for hashes made with a lower cost than the current one; cheap, so not queued
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException(
+                    "Too many concurrent sign-in requests. Please retry shortly.", retryAfterSeconds);
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,6 +1,8 @@
 package com.medical.emotionmonitoring.security;
 
+import com.medical.emotionmonitoring.entity.User;
 import com.medical.emotionmonitoring.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,6 +25,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final AccountStatusCache accountStatusCache;
 
     @Override
     protected void doFilterInternal(
@@ -30,27 +33,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain
     ) throws ServletException, IOException {
-        final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
+        final String jwt = resolveToken(request);
 
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (jwt == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        jwt = authHeader.substring(7);
         try {
-            username = jwtService.extractUsername(jwt);
+            // Verified once (or taken from the verified-token cache)
+            Claims claims = jwtService.parseToken(jwt);
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            if (claims.getSubject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // The principal comes from the token's claims; only tokens issued without them load the user
+                AuthenticatedUser user = AuthenticatedUser.fromClaims(claims);
+                if (user == null) {
+                    UserDetails userDetails = this.userDetailsService.loadUserByUsername(claims.getSubject());
+                    if (userDetails instanceof User entity && jwtService.isTokenValid(claims, userDetails)) {
+                        user = AuthenticatedUser.fromUser(entity);
+                    }
+                }
 
-                if (jwtService.validateToken(jwt, userDetails)) {
+                if (user != null && accountStatusCache.isActive(user.id())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            user,
                             null,
-                            userDetails.getAuthorities()
+                            user.getAuthorities()
                     );
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -62,5 +70,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Bearer token from the Authorization header; WebSocket handshakes may pass it as the
+     * {@code access_token} query parameter instead, since browsers cannot set headers on them
+     */
+    private String resolveToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            String token = request.getParameter("access_token");
+            return token == null || token.isBlank() ? null : token;
+        }
+        return null;
+    }
 }
 
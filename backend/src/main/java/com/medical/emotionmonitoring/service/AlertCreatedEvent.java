@@ -0,0 +1,9 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.dto.AlertResponse;
+
+/**
+ * Published by {@link AlertService} when an alert is saved; delivered to live streams after commit
+ */
+public record AlertCreatedEvent(AlertResponse alert) {
+}
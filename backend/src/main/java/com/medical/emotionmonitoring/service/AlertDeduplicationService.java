@@ -0,0 +1,79 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.entity.AlertKind;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
+import com.medical.emotionmonitoring.repository.AlertRepository;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Suppresses repeated alerts of the same kind for a patient within a time window.
+ * Recently created alerts are remembered in a bounded TTL cache, which is consulted first;
+ * on a miss a single indexed lookup on (patient_id, kind, emotion_type, created_at) is used instead
+ * of loading the patient's full alert list. A lookup that finds no recent alert is cached too, so a
+ * patient without alerts does not cost a query per reading.
+ */
+@Slf4j
+@Service
+public class AlertDeduplicationService {
+
+    // Cached when the lookup found no alert in the window; recordAlert replaces it on the next insert
+    private static final LocalDateTime NO_RECENT_ALERT = LocalDateTime.MIN;
+
+    private final AlertRepository alertRepository;
+    private final BoundedCache<AlertKey, LocalDateTime> latestAlerts;
+
+    public AlertDeduplicationService(
+            AlertRepository alertRepository,
+            @Value("${alert.dedup.cache-max-entries:50000}") int maxEntries,
+            @Value("${alert.dedup.cache-ttl-minutes:60}") long ttlMinutes) {
+        this.alertRepository = alertRepository;
+        this.latestAlerts = new BoundedCache<>(maxEntries, Duration.ofMinutes(ttlMinutes));
+    }
+
+    /**
+     * Check whether an alert of this kind and emotion type was already raised for the patient within the window
+     */
+    public boolean isDuplicate(Long patientId, AlertKind kind, EmotionTypeEnum emotionType, Duration window) {
+        AlertKey key = new AlertKey(patientId, kind, emotionType);
+        LocalDateTime since = LocalDateTime.now().minus(window);
+
+        LocalDateTime cached = latestAlerts.get(key);
+        if (cached != null) {
+            return cached.isAfter(since);
+        }
+
+        LocalDateTime latest = alertRepository.findLatestCreatedAtByPatientIdAndKindSince(
+                patientId, kind, emotionType, since);
+        // Only if absent: an alert committed since the lookup has already recorded a newer time
+        latestAlerts.putIfAbsent(key, latest != null ? latest : NO_RECENT_ALERT);
+        return latest != null;
+    }
+
+    /**
+     * Remember a newly created alert once the surrounding transaction commits
+     */
+    public void recordAlert(Long patientId, AlertKind kind, EmotionTypeEnum emotionType, LocalDateTime createdAt) {
+        AlertKey key = new AlertKey(patientId, kind, emotionType);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            latestAlerts.put(key, createdAt);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                latestAlerts.put(key, createdAt);
+            }
+        });
+    }
+
+    private record AlertKey(Long patientId, AlertKind kind, EmotionTypeEnum emotionType) {
+    }
+}
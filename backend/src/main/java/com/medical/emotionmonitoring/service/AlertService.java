@@ -1,31 +1,54 @@
 package com.medical.emotionmonitoring.service;
 
+import com.medical.emotionmonitoring.dto.AlertAcknowledgeRequest;
+import com.medical.emotionmonitoring.dto.AlertResponse;
+import com.medical.emotionmonitoring.dto.CursorPageResponse;
 import com.medical.emotionmonitoring.entity.Alert;
-import com.medical.emotionmonitoring.entity.Role;
+import com.medical.emotionmonitoring.entity.AlertKind;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
 import com.medical.emotionmonitoring.entity.User;
 import com.medical.emotionmonitoring.repository.AlertRepository;
+import com.medical.emotionmonitoring.exception.ValidationException;
 import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class AlertService {
 
+    private static final int MAX_INBOX_PAGE_SIZE = 100;
+
     private final AlertRepository alertRepository;
     private final UserRepository userRepository;
+    private final AlertDeduplicationService alertDeduplicationService;
+    private final PatientDoctorLookupService patientDoctorLookupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UnreadAlertCounter unreadAlertCounter;
 
     @Transactional
     public Alert createAlert(Long patientId, String message) {
+        return createAlert(patientId, message, null, null);
+    }
+
+    /**
+     * Create an alert tagged with its kind and emotion type so it can be deduplicated without scanning messages
+     */
+    @Transactional
+    public Alert createAlert(Long patientId, String message, AlertKind kind, EmotionTypeEnum emotionType) {
         User patient = userRepository.findById(patientId)
                 .orElseThrow(() -> new RuntimeException("Patient not found"));
 
         // Find the doctor assigned to this patient, or an available doctor
-        User doctor = findDoctorForPatient(patient)
+        User doctor = patientDoctorLookupService.findDoctorIdForPatient(patientId)
+                .map(userRepository::getReferenceById)
                 .orElseThrow(() -> new RuntimeException(
                         "No doctor available in the system. Please create a doctor user first."));
 
@@ -35,69 +58,121 @@ public class AlertService {
         alert.setPatient(patient);
         alert.setDoctor(doctor);
         alert.setIsRead(false);
+        alert.setKind(kind);
+        alert.setEmotionType(emotionType);
 
-        return alertRepository.save(alert);
+        Alert savedAlert = alertRepository.save(alert);
+        if (kind != null) {
+            alertDeduplicationService.recordAlert(patientId, kind, emotionType, savedAlert.getCreatedAt());
+        }
+        // The doctor is an unloaded reference; its cached name keeps the event from loading it
+        eventPublisher.publishEvent(new AlertCreatedEvent(
+                toResponse(savedAlert, patientDoctorLookupService.findDoctorName(doctor.getId()))));
+        return savedAlert;
     }
 
     /**
-     * Find the doctor assigned to a patient, or an available doctor if none is assigned
+     * All of the doctor's alerts, newest first, projected in one query (no per-alert association loads)
      */
-    private Optional<User> findDoctorForPatient(User patient) {
-        // First, try to find a doctor assigned to this patient
-        List<User> doctors = userRepository.findAll().stream()
-                .filter(user -> user.getRole() == Role.DOCTOR)
-                .toList();
-
-        for (User doctor : doctors) {
-            if (doctor.getAssignedPatients() != null 
-                    && doctor.getAssignedPatients().contains(patient)) {
-                return Optional.of(doctor);
-            }
-        }
+    public List<AlertResponse> getAlertsByDoctorId(Long doctorId) {
+        return alertRepository.findInboxPage(doctorId, false, Pageable.unpaged());
+    }
 
-        // If no assigned doctor found, return the first available doctor
-        if (doctors.isEmpty()) {
-            return Optional.empty();
-        }
+    public List<Alert> getAlertsByPatientId(Long patientId) {
+        return alertRepository.findByPatientIdOrderByCreatedAtDesc(patientId);
+    }
 
-        return Optional.of(doctors.get(0));
+    public List<AlertResponse> getUnreadAlertsByDoctorId(Long doctorId) {
+        return alertRepository.findInboxPage(doctorId, true, Pageable.unpaged());
     }
 
     /**
-     * Find an available doctor (for backward compatibility)
-     * In a production system, this would use a doctor-patient assignment table
+     * Up to 100 alerts created for the doctor after the given alert, oldest first
      */
-    private Optional<User> findAvailableDoctor() {
-        List<User> doctors = userRepository.findAll().stream()
-                .filter(user -> user.getRole() == Role.DOCTOR)
+    @Transactional(readOnly = true)
+    public List<AlertResponse> getAlertsSince(Long doctorId, Long lastAlertId) {
+        return alertRepository.findTop100ByDoctorIdAndIdGreaterThanOrderByIdAsc(doctorId, lastAlertId).stream()
+                .map(this::toResponse)
                 .toList();
+    }
 
-        if (doctors.isEmpty()) {
-            return Optional.empty();
-        }
+    public long getUnreadCount(Long doctorId) {
+        return unreadAlertCounter.getUnreadCount(doctorId);
+    }
 
-        // Return the first available doctor
-        // In a real system, you might implement load balancing or assignment logic
-        return Optional.of(doctors.get(0));
+    @Transactional
+    public void markAsRead(Long alertId) {
+        Long doctorId = alertRepository.findDoctorIdById(alertId)
+                .orElseThrow(() -> new RuntimeException("Alert not found"));
+        // Conditional update, so acknowledging the same alert twice only lowers the badge once
+        if (alertRepository.markAsReadIfUnread(alertId) > 0) {
+            unreadAlertCounter.markRead(doctorId, 1);
+        }
     }
 
-    public List<Alert> getAlertsByDoctorId(Long doctorId) {
-        return alertRepository.findByDoctorIdOrderByCreatedAtDesc(doctorId);
+    /**
+     * Mark the doctor's listed alerts and/or all alerts created up to {@code before} as read, each with
+     * a single UPDATE; returns how many alerts changed. Alerts of other doctors are never touched.
+     */
+    @Transactional
+    public int acknowledgeAlerts(Long doctorId, AlertAcknowledgeRequest request) {
+        boolean hasIds = request.getAlertIds() != null && !request.getAlertIds().isEmpty();
+        if (!hasIds && request.getBefore() == null) {
+            throw new ValidationException("Provide alertIds or before");
+        }
+        int updated = 0;
+        if (hasIds) {
+            updated += alertRepository.markAsReadByIds(doctorId, request.getAlertIds());
+        }
+        if (request.getBefore() != null) {
+            updated += alertRepository.markAsReadCreatedBefore(doctorId, request.getBefore());
+        }
+        unreadAlertCounter.markRead(doctorId, updated);
+        return updated;
     }
 
-    public List<Alert> getAlertsByPatientId(Long patientId) {
-        return alertRepository.findByPatientIdOrderByCreatedAtDesc(patientId);
+    /**
+     * One page of the doctor's alerts, newest first, using keyset pagination on (createdAt, id)
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<AlertResponse> getInboxPage(Long doctorId, boolean unreadOnly, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_INBOX_PAGE_SIZE));
+        // Fetch one extra row to find out whether another page follows
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<AlertResponse> alerts;
+        if (cursor == null || cursor.isBlank()) {
+            alerts = alertRepository.findInboxPage(doctorId, unreadOnly, pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            alerts = alertRepository.findInboxPageBeforeCursor(
+                    doctorId, unreadOnly, after.timestamp(), after.id(), pageRequest);
+        }
+
+        boolean hasMore = alerts.size() > pageSize;
+        List<AlertResponse> page = hasMore ? alerts.subList(0, pageSize) : alerts;
+        String nextCursor = null;
+        if (hasMore) {
+            AlertResponse last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPageResponse<>(page, nextCursor, hasMore);
     }
 
-    public List<Alert> getUnreadAlertsByDoctorId(Long doctorId) {
-        return alertRepository.findUnreadAlertsByDoctorId(doctorId);
+    public AlertResponse toResponse(Alert alert) {
+        return toResponse(alert, alert.getDoctor().getFullName());
     }
 
-    public void markAsRead(Long alertId) {
-        Alert alert = alertRepository.findById(alertId)
-                .orElseThrow(() -> new RuntimeException("Alert not found"));
-        alert.setIsRead(true);
-        alertRepository.save(alert);
+    private AlertResponse toResponse(Alert alert, String doctorName) {
+        AlertResponse response = new AlertResponse();
+        response.setId(alert.getId());
+        response.setMessage(alert.getMessage());
+        response.setCreatedAt(alert.getCreatedAt());
+        response.setIsRead(alert.getIsRead());
+        response.setPatientId(alert.getPatient().getId());
+        response.setPatientName(alert.getPatient().getFullName());
+        response.setDoctorId(alert.getDoctor().getId());
+        response.setDoctorName(doctorName);
+        return response;
     }
 }
 
@@ -0,0 +1,409 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.dto.AlertResponse;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-doctor fan-out of new alerts to Server-Sent Events streams, so clients no longer poll.
+ *
+ * <p>Alerts are pushed after their transaction commits, as {@code alert} events whose id is the
+ * alert id. A client that reconnects with {@code Last-Event-ID} first receives the alerts it missed,
+ * read on the reconnecting request's own thread; alerts committed meanwhile are held back and sent
+ * after the replay unless the replay already contained them. Idle streams get a comment every
+ * {@code alert.stream.heartbeat-ms} so proxies keep them open and dead connections are noticed.
+ *
+ * <p>Each stream has its own bounded queue, drained in order by a small pool of sender threads, so a
+ * client that stops reading only delays itself. A stream whose queue fills up, or whose write has been
+ * blocked for {@code alert.stream.send-timeout-ms}, is closed; the client reconnects and catches up
+ * with {@code Last-Event-ID}. Closing never waits: the emitter is completed by the stream's own drain
+ * once no write is in progress. A blocked write holds its sender thread until the container's write
+ * timeout ({@code server.tomcat.connection-timeout}) fails it, and until then a spare thread is added
+ * to the pool in its place.
+ */
+@Slf4j
+@Component
+public class AlertStreamHub {
+
+    private final AlertService alertService;
+    private final long timeoutMillis;
+    private final long reconnectMillis;
+    private final int maxConnections;
+    private final int maxConnectionsPerDoctor;
+    private final int senderThreads;
+    private final int maxPendingEvents;
+    private final long sendTimeoutNanos;
+    private final Map<Long, List<Stream>> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    // Streams with a write in progress, including ones already closed while it blocks
+    private final Set<Stream> sending = ConcurrentHashMap.newKeySet();
+    private final Counter stalledStreams;
+    // At most one drain task per stream is queued, so the pool's queue is bounded by the open streams
+    private final ThreadPoolExecutor sender;
+
+    public AlertStreamHub(
+            AlertService alertService,
+            MeterRegistry meterRegistry,
+            @Value("${alert.stream.timeout-minutes:30}") long timeoutMinutes,
+            @Value("${alert.stream.reconnect-ms:5000}") long reconnectMillis,
+            @Value("${alert.stream.max-connections:2000}") int maxConnections,
+            @Value("${alert.stream.max-connections-per-doctor:5}") int maxConnectionsPerDoctor,
+            @Value("${alert.stream.sender-threads:4}") int senderThreads,
+            @Value("${alert.stream.max-pending-events:100}") int maxPendingEvents,
+            @Value("${alert.stream.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.alertService = alertService;
+        this.timeoutMillis = Duration.ofMinutes(timeoutMinutes).toMillis();
+        this.reconnectMillis = reconnectMillis;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerDoctor = maxConnectionsPerDoctor;
+        this.senderThreads = senderThreads;
+        this.maxPendingEvents = maxPendingEvents;
+        this.sendTimeoutNanos = Duration.ofMillis(sendTimeoutMillis).toNanos();
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("alert-stream-"));
+        Gauge.builder("alert.stream.connections", connections, AtomicInteger::get)
+                .description("Open alert event streams")
+                .register(meterRegistry);
+        this.stalledStreams = Counter.builder("alert.stream.stalled")
+                .description("Alert streams closed because their client stopped reading")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open a stream for the doctor, replaying alerts after {@code lastEventId} when it is given
+     */
+    public SseEmitter subscribe(Long doctorId, Long lastEventId) {
+        if (connections.get() >= maxConnections) {
+            throw new TooManyRequestsException("Too many open alert streams", reconnectMillis / 1000);
+        }
+        Stream stream = new Stream(doctorId, new SseEmitter(timeoutMillis), lastEventId != null);
+        List<Stream> replaced = new ArrayList<>();
+        streams.compute(doctorId, (id, doctorStreams) -> {
+            List<Stream> current = doctorStreams != null ? doctorStreams : new CopyOnWriteArrayList<>();
+            // A doctor reopening the app should not pile up streams; the oldest ones are closed
+            while (current.size() >= maxConnectionsPerDoctor) {
+                replaced.add(current.remove(0));
+                connections.decrementAndGet();
+            }
+            current.add(stream);
+            connections.incrementAndGet();
+            return current;
+        });
+        replaced.forEach(Stream::close);
+        SseEmitter emitter = stream.emitter;
+        emitter.onCompletion(() -> remove(stream));
+        emitter.onTimeout(() -> remove(stream));
+        emitter.onError(e -> remove(stream));
+
+        // Registered before reading missed alerts, so nothing committed in between is lost
+        List<AlertResponse> missed = List.of();
+        if (lastEventId != null) {
+            try {
+                missed = alertService.getAlertsSince(doctorId, lastEventId);
+            } catch (RuntimeException e) {
+                remove(stream);
+                throw e;
+            }
+            log.debug("Resuming alert stream for doctor {} after alert {} with {} missed alert(s)",
+                    doctorId, lastEventId, missed.size());
+        }
+        stream.start(lastEventId != null ? lastEventId : 0L, missed);
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAlertCreated(AlertCreatedEvent event) {
+        AlertResponse alert = event.alert();
+        List<Stream> doctorStreams = streams.get(alert.getDoctorId());
+        if (doctorStreams != null) {
+            doctorStreams.forEach(stream -> stream.offerAlert(alert));
+        }
+    }
+
+    /**
+     * Close streams whose write is blocked, size the sender pool around them and send heartbeats.
+     * Only queues work, so the shared scheduler thread never waits on a client.
+     */
+    @Scheduled(fixedDelayString = "${alert.stream.heartbeat-ms:20000}")
+    public void sendHeartbeats() {
+        if (connections.get() == 0 && sending.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        int blocked = 0;
+        for (Stream stream : sending) {
+            long sendingSince = stream.sendingSince;
+            if (sendingSince != 0 && now - sendingSince > sendTimeoutNanos) {
+                blocked++;
+                stalled(stream, "a write blocked for over " + Duration.ofNanos(sendTimeoutNanos).toMillis() + " ms");
+            }
+        }
+        resizeSender(blocked);
+        streams.values().forEach(doctorStreams -> doctorStreams.forEach(Stream::offerHeartbeat));
+    }
+
+    /**
+     * One spare sender thread per blocked write, so the other streams keep their full pool
+     */
+    private void resizeSender(int blocked) {
+        int target = senderThreads + Math.min(blocked, maxConnections);
+        if (target > sender.getMaximumPoolSize()) {
+            sender.setMaximumPoolSize(target);
+            sender.setCorePoolSize(target);
+        } else if (target < sender.getCorePoolSize()) {
+            sender.setCorePoolSize(target);
+            sender.setMaximumPoolSize(target);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(AlertResponse alert) {
+        return SseEmitter.event()
+                .id(String.valueOf(alert.getId()))
+                .name("alert")
+                .data(alert, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Write one event; a failed write means the client is gone, so the stream is dropped (the
+     * container completes the request itself, so the emitter is not completed here)
+     */
+    private boolean send(Stream stream, SseEmitter.SseEventBuilder event) {
+        try {
+            stream.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping alert stream for doctor {}: {}", stream.doctorId, e.getMessage());
+            remove(stream);
+            return false;
+        }
+    }
+
+    private void stalled(Stream stream, String reason) {
+        remove(stream);
+        if (stream.close()) {
+            log.warn("Closing alert stream of doctor {}: {}", stream.doctorId, reason);
+            stalledStreams.increment();
+        }
+    }
+
+    private void remove(Stream stream) {
+        streams.computeIfPresent(stream.doctorId, (id, doctorStreams) -> {
+            if (doctorStreams.remove(stream)) {
+                connections.decrementAndGet();
+            }
+            return doctorStreams.isEmpty() ? null : doctorStreams;
+        });
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        streams.values().forEach(doctorStreams -> doctorStreams.forEach(Stream::close));
+        streams.clear();
+        sender.shutdown();
+        // Streams whose write is still blocked are left to the container
+        if (!sender.awaitTermination(5, TimeUnit.SECONDS)) {
+            sender.shutdownNow();
+        }
+    }
+
+    /**
+     * One open stream and the events waiting to be written to it
+     */
+    private final class Stream {
+
+        private final Long doctorId;
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        // Live alerts that arrive while the missed ones are being read
+        private List<AlertResponse> held;
+        // Alerts up to this id were replayed or already seen by the client
+        private long replayedUpTo;
+        private boolean draining;
+        private boolean closed;
+        private volatile long sendingSince;
+
+        Stream(Long doctorId, SseEmitter emitter, boolean replaying) {
+            this.doctorId = doctorId;
+            this.emitter = emitter;
+            this.held = replaying ? new ArrayList<>() : null;
+        }
+
+        void start(long lastEventId, List<AlertResponse> missed) {
+            boolean overflow = false;
+            lock.lock();
+            try {
+                overflow |= !enqueue(SseEmitter.event().comment("connected").reconnectTime(reconnectMillis));
+                replayedUpTo = lastEventId;
+                for (AlertResponse alert : missed) {
+                    overflow |= !enqueue(event(alert));
+                    replayedUpTo = Math.max(replayedUpTo, alert.getId());
+                }
+                List<AlertResponse> live = held != null ? held : List.of();
+                held = null;
+                for (AlertResponse alert : live) {
+                    if (alert.getId() > replayedUpTo) {
+                        overflow |= !enqueue(event(alert));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (overflow) {
+                stalled(this, "more than " + maxPendingEvents + " events to replay");
+            }
+        }
+
+        void offerAlert(AlertResponse alert) {
+            boolean overflow;
+            lock.lock();
+            try {
+                if (held != null) {
+                    held.add(alert);
+                    return;
+                }
+                // Already sent by the replay
+                if (alert.getId() <= replayedUpTo) {
+                    return;
+                }
+                overflow = !enqueue(event(alert));
+            } finally {
+                lock.unlock();
+            }
+            if (overflow) {
+                stalled(this, "more than " + maxPendingEvents + " events waiting");
+            }
+        }
+
+        void offerHeartbeat() {
+            lock.lock();
+            try {
+                // A stream with events on their way needs no heartbeat
+                if (held == null && queue.isEmpty() && !draining) {
+                    enqueue(SseEmitter.event().comment("heartbeat"));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Queue an event and schedule a drain if none is running; false when the queue is full
+         */
+        private boolean enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return true;
+            }
+            if (queue.size() >= maxPendingEvents) {
+                return false;
+            }
+            queue.add(event);
+            if (!draining) {
+                draining = true;
+                sender.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                lock.lock();
+                try {
+                    event = closed ? null : queue.poll();
+                    if (event == null) {
+                        draining = false;
+                        if (!closed) {
+                            return;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (event == null) {
+                    // No write of this stream is in progress here, so completing cannot wait on one
+                    emitter.complete();
+                    return;
+                }
+                sending.add(this);
+                sendingSince = System.nanoTime();
+                boolean sent;
+                try {
+                    sent = send(this, event);
+                } finally {
+                    sendingSince = 0;
+                    sending.remove(this);
+                }
+                if (!sent) {
+                    lock.lock();
+                    try {
+                        closed = true;
+                        queue.clear();
+                        draining = false;
+                    } finally {
+                        lock.unlock();
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Close the stream without waiting. The emitter's send and complete share a monitor, so a
+         * write blocked on this client would block an inline complete; the stream's drain completes
+         * it instead, after any write in progress. Returns false if the stream was already closed.
+         */
+        boolean close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                queue.clear();
+                if (draining) {
+                    return true;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; nothing is being written to this stream, so completing cannot block
+                emitter.complete();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache of detection results, keyed by the SHA-256 of the image content and the
+ * provider model that produced the result. Re-uploads of the same frame (client retries, double taps)
+ * are answered without calling the paid provider; concurrent uploads of the same image share one call.
+ * Fallback (mock) results are never cached.
+ */
+@Slf4j
+@Component
+public class EmotionDetectionCache {
+
+    private static final int HASH_BUFFER_SIZE = 16 * 1024;
+
+    private final boolean enabled;
+    private final BoundedCache<CacheKey, EmotionDetectionResponse> results;
+    private final ConcurrentMap<CacheKey, CompletableFuture<EmotionDetectionResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public EmotionDetectionCache(
+            MeterRegistry meterRegistry,
+            @Value("${emotion.detection.cache.enabled:true}") boolean enabled,
+            @Value("${emotion.detection.cache.max-entries:10000}") int maxEntries,
+            @Value("${emotion.detection.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.enabled = enabled;
+        this.results = new BoundedCache<>(maxEntries, Duration.ofMinutes(ttlMinutes));
+        this.hits = Counter.builder("emotion.detection.cache.requests")
+                .tag("result", "hit")
+                .description("Detections answered from the content-hash cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("emotion.detection.cache.requests")
+                .tag("result", "miss")
+                .description("Detections that called the provider")
+                .register(meterRegistry);
+        Gauge.builder("emotion.detection.cache.size", results, BoundedCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Return the cached result for this image and model, or run the detector and cache its result
+     */
+    public EmotionDetectionResponse getOrDetect(InputStreamSource image, String model,
+                                                Supplier<EmotionDetectionResponse> detector) throws IOException {
+        if (!enabled) {
+            return detector.get();
+        }
+
+        CacheKey key = new CacheKey(model, sha256(image));
+        EmotionDetectionResponse cached = results.get(key);
+        if (cached != null) {
+            hits.increment();
+            log.debug("Detection cache hit for image {}", key.imageHash());
+            return copyOf(cached);
+        }
+
+        CompletableFuture<EmotionDetectionResponse> call = new CompletableFuture<>();
+        CompletableFuture<EmotionDetectionResponse> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            // The same image is already being detected; wait for that call instead of making another
+            hits.increment();
+            log.debug("Joining in-flight detection for image {}", key.imageHash());
+            return copyOf(existing.join());
+        }
+
+        misses.increment();
+        try {
+            EmotionDetectionResponse response = detector.get();
+            if (!response.isFallback()) {
+                results.put(key, response);
+            }
+            call.complete(response);
+            return copyOf(response);
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Callers get their own copy so a cached result can never be modified through a response
+     */
+    private static EmotionDetectionResponse copyOf(EmotionDetectionResponse response) {
+        return new EmotionDetectionResponse(
+                response.getEmotion(),
+                response.getConfidence(),
+                response.getEmotions() != null ? new HashMap<>(response.getEmotions()) : null,
+                response.isFallback());
+    }
+
+    /**
+     * Hash the image by streaming it, so it is never fully loaded onto the heap
+     */
+    private static String sha256(InputStreamSource image) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = image.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private record CacheKey(String model, String imageHash) {
+    }
+}
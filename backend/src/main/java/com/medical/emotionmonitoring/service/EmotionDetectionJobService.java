@@ -0,0 +1,204 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.dto.DetectionJobResponse;
+import com.medical.emotionmonitoring.dto.DetectionJobResponse.Status;
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import com.medical.emotionmonitoring.dto.EmotionResponse;
+import com.medical.emotionmonitoring.exception.BusinessException;
+import com.medical.emotionmonitoring.exception.EntityNotFoundException;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs image emotion detection asynchronously so slow providers never hold a request thread.
+ * Jobs go through a bounded queue in front of a dedicated worker pool; when both are full,
+ * submissions are rejected with HTTP 429 instead of piling up.
+ */
+@Slf4j
+@Service
+public class EmotionDetectionJobService {
+
+    private final EmotionService emotionService;
+    private final EmotionDetectionService emotionDetectionService;
+    private final ThreadPoolExecutor executor;
+    private final BoundedCache<String, DetectionJob> jobs;
+    private final long retryAfterSeconds;
+
+    public EmotionDetectionJobService(
+            EmotionService emotionService,
+            EmotionDetectionService emotionDetectionService,
+            @Value("${emotion.detection.async.workers:4}") int workers,
+            @Value("${emotion.detection.async.queue-capacity:16}") int queueCapacity,
+            @Value("${emotion.detection.async.max-tracked-jobs:10000}") int maxTrackedJobs,
+            @Value("${emotion.detection.async.job-retention-minutes:15}") long jobRetentionMinutes,
+            @Value("${emotion.detection.async.retry-after-seconds:5}") long retryAfterSeconds,
+            @Value("${emotion.detection.async.virtual-threads:false}") boolean virtualThreads) {
+        this.emotionService = emotionService;
+        this.emotionDetectionService = emotionDetectionService;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                workerThreadFactory(virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = new BoundedCache<>(maxTrackedJobs, Duration.ofMinutes(jobRetentionMinutes));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Workers spend nearly all their time waiting on the provider, so with virtual threads the
+     * pool can be sized to the desired number of in-flight calls rather than to CPU count
+     */
+    private static ThreadFactory workerThreadFactory(boolean virtualThreads) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name("emotion-detect-vt-", 0).factory();
+        }
+        return new CustomizableThreadFactory("emotion-detect-");
+    }
+
+    /**
+     * Queue an image for detection and return immediately with the job ID
+     */
+    public DetectionJobResponse submit(Long patientId, MultipartFile imageFile) {
+        // The multipart upload is discarded when the request ends, so spool it to our own file
+        // rather than holding a copy of the image on the heap while the job is queued
+        Path imagePath;
+        try {
+            imagePath = Files.createTempFile("emotion-job-", ".img");
+        } catch (IOException e) {
+            throw new BusinessException("Could not read uploaded image", e);
+        }
+        // A failed upload must not leave its spool file behind
+        try {
+            imageFile.transferTo(imagePath);
+        } catch (IOException e) {
+            deleteImage(imagePath);
+            throw new BusinessException("Could not read uploaded image", e);
+        } catch (RuntimeException e) {
+            deleteImage(imagePath);
+            throw e;
+        }
+
+        DetectionJob job = new DetectionJob(UUID.randomUUID().toString(), patientId);
+        jobs.put(job.id, job);
+
+        try {
+            executor.execute(new DetectionTask(job, imagePath));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteImage(imagePath);
+            log.warn("Emotion detection queue is full ({} queued, {} active); rejecting job for patient {}",
+                    executor.getQueue().size(), executor.getActiveCount(), patientId);
+            throw new TooManyRequestsException(
+                    "Emotion detection is at capacity. Please retry later.", retryAfterSeconds);
+        }
+
+        log.info("Queued emotion detection job {} for patient {}", job.id, patientId);
+        return job.toResponse();
+    }
+
+    /**
+     * Get the current state of a job; patients can only see their own jobs
+     */
+    public DetectionJobResponse getJob(String jobId, Long patientId) {
+        DetectionJob job = jobs.get(jobId);
+        if (job == null || !job.patientId.equals(patientId)) {
+            throw new EntityNotFoundException("Detection job not found: " + jobId);
+        }
+        return job.toResponse();
+    }
+
+    private void run(DetectionJob job, Path imagePath) {
+        job.status = Status.RUNNING;
+        try {
+            // Inference runs outside of any transaction; only the save below holds a connection
+            EmotionDetectionResponse detection = emotionDetectionService.detectEmotion(
+                    new FileSystemResource(imagePath), Files.size(imagePath));
+            job.emotion = emotionService.saveDetectedEmotion(job.patientId, detection);
+            job.finish(Status.COMPLETED);
+        } catch (Exception e) {
+            log.error("Emotion detection job {} failed for patient {}: {}", job.id, job.patientId, e.getMessage(), e);
+            job.error = "Emotion detection failed";
+            job.finish(Status.FAILED);
+        } finally {
+            deleteImage(imagePath);
+        }
+    }
+
+    private static void deleteImage(Path imagePath) {
+        try {
+            Files.deleteIfExists(imagePath);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled image {}: {}", imagePath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            List<Runnable> dropped = executor.shutdownNow();
+            dropped.forEach(task -> deleteImage(((DetectionTask) task).imagePath));
+            log.warn("Emotion detection workers did not finish in time; {} queued jobs dropped", dropped.size());
+        }
+    }
+
+    private final class DetectionTask implements Runnable {
+        private final DetectionJob job;
+        private final Path imagePath;
+
+        private DetectionTask(DetectionJob job, Path imagePath) {
+            this.job = job;
+            this.imagePath = imagePath;
+        }
+
+        @Override
+        public void run() {
+            EmotionDetectionJobService.this.run(job, imagePath);
+        }
+    }
+
+    private static final class DetectionJob {
+        private final String id;
+        private final Long patientId;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile Status status = Status.QUEUED;
+        private volatile LocalDateTime completedAt;
+        private volatile EmotionResponse emotion;
+        private volatile String error;
+
+        private DetectionJob(String id, Long patientId) {
+            this.id = id;
+            this.patientId = patientId;
+        }
+
+        private void finish(Status finalStatus) {
+            completedAt = LocalDateTime.now();
+            status = finalStatus;
+        }
+
+        private DetectionJobResponse toResponse() {
+            return new DetectionJobResponse(id, status, submittedAt, completedAt, emotion, error);
+        }
+    }
+}
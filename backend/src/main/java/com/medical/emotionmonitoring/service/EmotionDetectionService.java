@@ -2,56 +2,34 @@ package com.medical.emotionmonitoring.service;
 
 import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
 import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import com.medical.emotionmonitoring.service.provider.EmotionProviderRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Entry point for image emotion detection. Results come from the content-hash cache or from the
+ * provider router (Luxand, Hugging Face, Eden AI, the legacy emotion.api.url or the local model),
+ * which receives the image after {@link ImagePreprocessor} has shrunk it; when detection is
+ * disabled or every provider fails, a random mock result is returned instead.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmotionDetectionService {
 
-    private final RestTemplate restTemplate;
-
-    // API Provider Configuration
-    @Value("${emotion.api.provider:LUXAND}")
-    private String apiProvider;
-
-    // Luxand API Configuration
-    @Value("${emotion.api.luxand.url:https://api.luxand.cloud/photo/emotions}")
-    private String luxandApiUrl;
-
-    @Value("${emotion.api.luxand.key:}")
-    private String luxandApiKey;
-
-    // Hugging Face API Configuration
-    @Value("${emotion.api.huggingface.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}")
-    private String huggingfaceApiUrl;
-
-    @Value("${emotion.api.huggingface.key:}")
-    private String huggingfaceApiKey;
-
-    // Eden AI Configuration
-    @Value("${emotion.api.edenai.url:https://api.edenai.run/v2/image/face_detection}")
-    private String edenaiApiUrl;
-
-    @Value("${emotion.api.edenai.key:}")
-    private String edenaiApiKey;
-
-    // Legacy configuration (for backward compatibility)
-    @Value("${emotion.api.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}")
-    private String emotionApiUrl;
-
-    @Value("${emotion.api.key:}")
-    private String emotionApiKey;
+    private final EmotionDetectionCache emotionDetectionCache;
+    private final EmotionProviderRouter emotionProviderRouter;
+    private final ImagePreprocessor imagePreprocessor;
 
     @Value("${emotion.api.enabled:true}")
     private boolean apiEnabled;
@@ -65,275 +43,56 @@ public class EmotionDetectionService {
             return getRandomMockEmotionResponse();
         }
 
-        try {
-            // Log image file details
-            log.info("Processing image file: name={}, size={} bytes, contentType={}", 
-                    imageFile.getOriginalFilename(), imageFile.getSize(), imageFile.getContentType());
-            
-            // Convert image to base64
-            byte[] imageBytes = imageFile.getBytes();
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-            
-            // Log base64 details for debugging
-            log.debug("Base64 image length: {} characters, first 50 chars: {}", 
-                    base64Image.length(), 
-                    base64Image.length() > 50 ? base64Image.substring(0, 50) + "..." : base64Image);
-            
-            // Save image temporarily for verification (optional, for debugging)
-            try {
-                java.io.File tempFile = java.io.File.createTempFile("emotion_image_", ".jpg");
-                java.nio.file.Files.write(tempFile.toPath(), imageBytes);
-                log.debug("Temporary image saved to: {}", tempFile.getAbsolutePath());
-                // Note: File will be deleted on JVM exit or can be cleaned up manually
-            } catch (Exception e) {
-                log.warn("Could not save temporary image file: {}", e.getMessage());
-            }
+        // Log image file details
+        log.info("Processing image file: name={}, size={} bytes, contentType={}", 
+                imageFile.getOriginalFilename(), imageFile.getSize(), imageFile.getContentType());
 
-            // Call external API
-            EmotionDetectionResponse response = callEmotionDetectionAPI(base64Image);
-            log.info("Emotion detection result: emotion={}, confidence={}", 
-                    response.getEmotion(), response.getConfidence());
-            return response;
-        } catch (Exception e) {
-            log.error("Error detecting emotion from image: {}", e.getMessage(), e);
-            // Fallback to random mock response if API fails
-            return getRandomMockEmotionResponse();
-        }
+        return detectEmotion(imageFile, imageFile.getSize());
     }
 
     /**
-     * Detect emotion from base64 encoded image
+     * Detect emotion from an image source (an upload, or a file spooled by detection jobs).
+     * Only the preprocessed copy is held on the heap; an image that is passed through unchanged is
+     * streamed to the provider.
      */
-    public EmotionDetectionResponse detectEmotionFromBase64(String base64Image) {
-        if (!apiEnabled) {
-            log.warn("Emotion detection API is disabled. Using mock response.");
+    public EmotionDetectionResponse detectEmotion(InputStreamSource image, long imageSize) {
+        if (!apiEnabled || !emotionProviderRouter.hasProviders()) {
+            log.warn("Emotion detection API is disabled or no provider is configured. Using mock response.");
             return getRandomMockEmotionResponse();
         }
 
         try {
-            // Log base64 details for debugging
-            log.debug("Base64 image length: {} characters, first 50 chars: {}", 
-                    base64Image.length(), 
-                    base64Image.length() > 50 ? base64Image.substring(0, 50) + "..." : base64Image);
-            
-            EmotionDetectionResponse response = callEmotionDetectionAPI(base64Image);
+            // Re-uploads of the same image are answered from the cache instead of calling a provider again;
+            // only a cache miss pays for shrinking the image before it is sent
+            EmotionDetectionResponse response = emotionDetectionCache.getOrDetect(
+                    image, emotionProviderRouter.describeModels(), () -> {
+                        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(image, imageSize);
+                        return emotionProviderRouter.detect(prepared.source(), prepared.size());
+                    });
             log.info("Emotion detection result: emotion={}, confidence={}", 
                     response.getEmotion(), response.getConfidence());
             return response;
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error detecting emotion from base64: {}", e.getMessage(), e);
+            log.error("Error detecting emotion from image: {}", e.getMessage());
+            // Fallback to random mock response if every provider fails
             return getRandomMockEmotionResponse();
         }
     }
 
     /**
-     * Call external emotion detection API
-     * This is a generic implementation that can work with different APIs
+     * Detect emotion from base64 encoded image
      */
-    private EmotionDetectionResponse callEmotionDetectionAPI(String base64Image) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        if (emotionApiKey != null && !emotionApiKey.isEmpty()) {
-            headers.set("Authorization", "Bearer " + emotionApiKey);
-        }
-
-        // Prepare request body
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("inputs", base64Image);
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-
+    public EmotionDetectionResponse detectEmotionFromBase64(String base64Image) {
+        byte[] imageBytes;
         try {
-            log.info("=== Calling Emotion Detection API ===");
-            log.info("API URL: {}", emotionApiUrl);
-            log.info("Base64 image length: {} characters", base64Image.length());
-            log.info("Has API Key: {}", emotionApiKey != null && !emotionApiKey.isEmpty());
-            
-            // Try to get response as Object first (could be Map or List)
-            ResponseEntity<Object> response = restTemplate.postForEntity(
-                    emotionApiUrl,
-                    request,
-                    Object.class
-            );
-
-            // Log raw response for debugging
-            log.info("API Response Status: {}", response.getStatusCode());
-            log.info("API Response Body Type: {}", response.getBody() != null ? response.getBody().getClass().getSimpleName() : "null");
-            log.info("API Response Body (full): {}", response.getBody());
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                EmotionDetectionResponse result = parseAPIResponse(response.getBody());
-                log.info("✅ Successfully parsed emotion: {} with confidence: {}", result.getEmotion(), result.getConfidence());
-                return result;
-            } else {
-                log.warn("❌ API returned non-success status: {}", response.getStatusCode());
-                log.warn("Response body: {}", response.getBody());
-                log.warn("⚠️ Falling back to random mock response");
-                return getRandomMockEmotionResponse();
-            }
-        } catch (org.springframework.web.client.HttpClientErrorException e) {
-            log.error("❌ HTTP Client Error calling emotion detection API");
-            log.error("Status Code: {}", e.getStatusCode());
-            log.error("Response Body: {}", e.getResponseBodyAsString());
-            log.error("⚠️ Falling back to random mock response");
-            return getRandomMockEmotionResponse();
-        } catch (org.springframework.web.client.HttpServerErrorException e) {
-            log.error("❌ HTTP Server Error calling emotion detection API");
-            log.error("Status Code: {}", e.getStatusCode());
-            log.error("Response Body: {}", e.getResponseBodyAsString());
-            log.error("⚠️ Falling back to random mock response");
-            return getRandomMockEmotionResponse();
-        } catch (Exception e) {
-            log.error("❌ Unexpected error calling emotion detection API: {}", e.getMessage(), e);
-            log.error("Error Type: {}", e.getClass().getSimpleName());
-            log.error("API URL: {}", emotionApiUrl);
-            log.error("⚠️ Falling back to random mock response");
+            imageBytes = Base64.getDecoder().decode(base64Image);
+        } catch (IllegalArgumentException e) {
+            log.error("Error decoding base64 image: {}", e.getMessage());
             return getRandomMockEmotionResponse();
         }
-    }
-
-    /**
-     * Parse API response and map to EmotionDetectionResponse
-     * This method handles different API response formats including Hugging Face format
-     */
-    @SuppressWarnings("unchecked")
-    private EmotionDetectionResponse parseAPIResponse(Object apiResponse) {
-        EmotionDetectionResponse response = new EmotionDetectionResponse();
-        Map<String, Double> emotions = new HashMap<>();
-
-        log.debug("Parsing API response of type: {}", apiResponse.getClass().getSimpleName());
-
-        // Format 1: Hugging Face returns a List of predictions (most common format)
-        if (apiResponse instanceof java.util.List) {
-            java.util.List<Object> responseList = (java.util.List<Object>) apiResponse;
-            log.debug("API returned List with {} items", responseList.size());
-            
-            if (!responseList.isEmpty()) {
-                // Hugging Face format: [{"label": "sadness", "score": 0.85}, ...]
-                for (Object item : responseList) {
-                    if (item instanceof Map) {
-                        Map<String, Object> prediction = (Map<String, Object>) item;
-                        String label = (String) prediction.get("label");
-                        Object scoreObj = prediction.get("score");
-                        
-                        if (label != null && scoreObj instanceof Number) {
-                            double score = ((Number) scoreObj).doubleValue();
-                            // Map Hugging Face labels to our emotion types
-                            String emotionKey = mapHuggingFaceLabelToEmotion(label);
-                            emotions.put(emotionKey, score);
-                            log.debug("Found emotion: {} with score: {}", emotionKey, score);
-                        }
-                    }
-                }
-            }
-        }
-        // Format 2: Direct Map with emotions object
-        else if (apiResponse instanceof Map) {
-            Map<String, Object> responseMap = (Map<String, Object>) apiResponse;
-            
-            // Format 2a: Direct emotion scores
-            if (responseMap.containsKey("emotions")) {
-                Map<String, Object> emotionsMap = (Map<String, Object>) responseMap.get("emotions");
-                emotionsMap.forEach((key, value) -> {
-                    if (value instanceof Number) {
-                        emotions.put(key.toUpperCase(), ((Number) value).doubleValue());
-                    }
-                });
-            }
-            // Format 2b: Predictions array in Map
-            else if (responseMap.containsKey("predictions")) {
-                Object predictionsObj = responseMap.get("predictions");
-                if (predictionsObj instanceof java.util.List) {
-                    java.util.List<Object> predictions = (java.util.List<Object>) predictionsObj;
-                    for (Object pred : predictions) {
-                        if (pred instanceof Map) {
-                            Map<String, Object> prediction = (Map<String, Object>) pred;
-                            String label = (String) prediction.get("label");
-                            Object scoreObj = prediction.get("score");
-                            if (label != null && scoreObj instanceof Number) {
-                                String emotionKey = mapHuggingFaceLabelToEmotion(label);
-                                emotions.put(emotionKey, ((Number) scoreObj).doubleValue());
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        // If no emotions were parsed, use fallback
-        if (emotions.isEmpty()) {
-            log.error("❌ Could not parse API response! Response type: {}", 
-                    apiResponse.getClass().getSimpleName());
-            log.error("Response content: {}", apiResponse);
-            log.error("⚠️ Using random mock response as fallback");
-            return getRandomMockEmotionResponse();
-        }
-        
-        log.info("✅ Successfully parsed {} emotions from API response", emotions.size());
-
-        // Find emotion with highest confidence
-        String dominantEmotion = emotions.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("NEUTRAL");
-
-        Double confidence = emotions.getOrDefault(dominantEmotion, 0.5);
-
-        response.setEmotion(dominantEmotion);
-        response.setConfidence(confidence);
-        response.setEmotions(emotions);
-
-        log.info("Parsed emotion: {} with confidence: {}, all emotions: {}", 
-                dominantEmotion, confidence, emotions);
-
-        return response;
-    }
-
-    /**
-     * Map Hugging Face emotion labels to our emotion types
-     * Supports both text-based models and vision-based models
-     */
-    private String mapHuggingFaceLabelToEmotion(String label) {
-        if (label == null) {
-            return "NEUTRAL";
-        }
-        
-        String lowerLabel = label.toLowerCase();
-        log.debug("Mapping Hugging Face label '{}' to emotion type", label);
-        
-        // Text-based model labels (j-hartmann/emotion-english-distilroberta-base)
-        if (lowerLabel.contains("joy") || lowerLabel.contains("happy") || lowerLabel.contains("happiness")) {
-            return "HAPPY";
-        } else if (lowerLabel.contains("sad") || lowerLabel.contains("sadness")) {
-            return "SAD";
-        } else if (lowerLabel.contains("angry") || lowerLabel.contains("anger") || lowerLabel.contains("rage")) {
-            return "ANGRY";
-        } else if (lowerLabel.contains("fear") || lowerLabel.contains("afraid") || lowerLabel.contains("scared")) {
-            return "FEAR";
-        } else if (lowerLabel.contains("love") || lowerLabel.contains("surprise")) {
-            return "HAPPY"; // Map positive emotions to HAPPY
-        }
-        // Vision-based model labels (trpakov/vit-face-expression)
-        else if (lowerLabel.contains("happy") || lowerLabel.contains("smile") || lowerLabel.contains("joy")) {
-            return "HAPPY";
-        } else if (lowerLabel.contains("sad") || lowerLabel.contains("sadness")) {
-            return "SAD";
-        } else if (lowerLabel.contains("angry") || lowerLabel.contains("anger") || lowerLabel.contains("mad")) {
-            return "ANGRY";
-        } else if (lowerLabel.contains("fear") || lowerLabel.contains("afraid") || lowerLabel.contains("scared")) {
-            return "FEAR";
-        } else if (lowerLabel.contains("neutral") || lowerLabel.contains("calm")) {
-            return "NEUTRAL";
-        } else if (lowerLabel.contains("surprise") || lowerLabel.contains("surprised")) {
-            return "HAPPY"; // Surprise can be positive
-        } else if (lowerLabel.contains("disgust")) {
-            return "ANGRY"; // Map disgust to angry
-        }
-        
-        // Default fallback
-        log.warn("Unknown emotion label '{}', defaulting to NEUTRAL", label);
-        return "NEUTRAL";
+        return detectEmotion(new ByteArrayResource(imageBytes), imageBytes.length);
     }
 
     /**
@@ -362,6 +121,7 @@ public class EmotionDetectionService {
         response.setEmotion(randomEmotion);
         response.setConfidence(baseConfidence);
         response.setEmotions(emotions);
+        response.setFallback(true);
         
         log.warn("Using random mock emotion response: {} (confidence: {})", randomEmotion, baseConfidence);
 
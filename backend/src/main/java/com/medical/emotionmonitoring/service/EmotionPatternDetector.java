@@ -0,0 +1,174 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.entity.Emotion;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
+import com.medical.emotionmonitoring.repository.EmotionRepository;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Streaming detector for the "N consecutive emotions of type X within window W" alert rule.
+ * Keeps the newest N readings per patient in memory so that each insert is O(N) instead of
+ * reloading the full emotion history; the state is rebuilt from a LIMIT-N query on a cold start.
+ */
+@Slf4j
+@Component
+public class EmotionPatternDetector {
+
+    private final EmotionRepository emotionRepository;
+    private final EmotionTypeEnum emotionType;
+    private final int consecutiveCount;
+    private final Duration window;
+    private final BoundedCache<Long, RecentEmotions> recentByPatient;
+
+    public EmotionPatternDetector(
+            EmotionRepository emotionRepository,
+            @Value("${alert.pattern.emotion-type:SAD}") EmotionTypeEnum emotionType,
+            @Value("${alert.pattern.consecutive-count:3}") int consecutiveCount,
+            @Value("${alert.pattern.window-minutes:0}") long windowMinutes,
+            @Value("${alert.pattern.max-tracked-patients:10000}") int maxTrackedPatients) {
+        if (consecutiveCount < 1) {
+            throw new IllegalArgumentException("alert.pattern.consecutive-count must be at least 1");
+        }
+        this.emotionRepository = emotionRepository;
+        this.emotionType = emotionType;
+        this.consecutiveCount = consecutiveCount;
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.recentByPatient = new BoundedCache<>(maxTrackedPatients);
+    }
+
+    /**
+     * Record a freshly saved emotion and check whether the patient's newest readings now match the rule.
+     * Must be called after the emotion has been saved within the current transaction.
+     */
+    public boolean recordAndMatch(Emotion emotion) {
+        Long patientId = emotion.getPatient().getId();
+
+        RecentEmotions recent = recentFor(patientId);
+        // No-op if the cold-start query already returned this emotion
+        recent.add(emotion.getId(), emotion.getTimestamp(), emotion.getEmotionType());
+
+        evictOnRollback(patientId);
+        return recent.matches(emotionType, window);
+    }
+
+    /**
+     * Record a batch of one patient's emotions, oldest first, and check whether the rule matched after
+     * any of them, so a batch is evaluated once and raises at most one pattern alert. Must be called
+     * before the batch is flushed, so a cold-start window does not already contain it.
+     */
+    public boolean recordAllAndMatch(Long patientId, List<Emotion> emotions) {
+        RecentEmotions recent = recentFor(patientId);
+        boolean matched = false;
+        for (Emotion emotion : emotions) {
+            recent.add(emotion.getId(), emotion.getTimestamp(), emotion.getEmotionType());
+            matched |= recent.matches(emotionType, window);
+        }
+
+        evictOnRollback(patientId);
+        return matched;
+    }
+
+    public EmotionTypeEnum getEmotionType() {
+        return emotionType;
+    }
+
+    public int getConsecutiveCount() {
+        return consecutiveCount;
+    }
+
+    private RecentEmotions recentFor(Long patientId) {
+        RecentEmotions recent = recentByPatient.get(patientId);
+        if (recent == null) {
+            RecentEmotions loaded = loadRecent(patientId);
+            recent = recentByPatient.putIfAbsent(patientId, loaded);
+            if (recent == null) {
+                recent = loaded;
+            }
+        }
+        return recent;
+    }
+
+    private RecentEmotions loadRecent(Long patientId) {
+        log.debug("Rebuilding recent emotion window for patient {} (last {} readings)", patientId, consecutiveCount);
+        RecentEmotions recent = new RecentEmotions(consecutiveCount);
+        emotionRepository.findByPatientIdOrderByTimestampDescIdDesc(patientId, PageRequest.of(0, consecutiveCount))
+                .forEach(e -> recent.add(e.getId(), e.getTimestamp(), e.getEmotionType()));
+        return recent;
+    }
+
+    /**
+     * Drop the in-memory window if the surrounding transaction rolls back, so it never holds
+     * readings that were not committed; it is rebuilt from the database on the next insert.
+     */
+    private void evictOnRollback(Long patientId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    recentByPatient.remove(patientId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Newest-first window of at most {@code capacity} readings for one patient
+     */
+    private static final class RecentEmotions {
+
+        private static final Comparator<Reading> NEWEST_FIRST = Comparator
+                .comparing(Reading::timestamp)
+                .thenComparing(Reading::id, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .reversed();
+
+        private final int capacity;
+        private final List<Reading> readings;
+
+        RecentEmotions(int capacity) {
+            this.capacity = capacity;
+            this.readings = new ArrayList<>(capacity + 1);
+        }
+
+        synchronized void add(Long id, LocalDateTime timestamp, EmotionTypeEnum type) {
+            if (id != null && readings.stream().anyMatch(r -> id.equals(r.id()))) {
+                return;
+            }
+            readings.add(new Reading(id, timestamp, type));
+            readings.sort(NEWEST_FIRST);
+            if (readings.size() > capacity) {
+                readings.remove(readings.size() - 1);
+            }
+        }
+
+        synchronized boolean matches(EmotionTypeEnum type, Duration window) {
+            if (readings.size() < capacity) {
+                return false;
+            }
+            boolean allMatch = readings.stream().allMatch(r -> r.type() == type);
+            if (!allMatch || window.isZero()) {
+                return allMatch;
+            }
+            LocalDateTime newest = readings.get(0).timestamp();
+            LocalDateTime oldest = readings.get(readings.size() - 1).timestamp();
+            return Duration.between(oldest, newest).compareTo(window) <= 0;
+        }
+    }
+
+    private record Reading(Long id, LocalDateTime timestamp, EmotionTypeEnum type) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.entity.Emotion;
+import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
+import com.medical.emotionmonitoring.repository.EmotionDailyRollupRepository;
+import com.medical.emotionmonitoring.repository.EmotionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the per-patient daily emotion rollups used by the statistics endpoint
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmotionRollupService implements SmartInitializingSingleton {
+
+    private final EmotionDailyRollupRepository rollupRepository;
+    private final EmotionRepository emotionRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Add a newly saved emotion to its patient's daily bucket (runs in the caller's transaction)
+     */
+    public void recordEmotion(Emotion emotion) {
+        EmotionTypeEnum type = emotion.getEmotionType();
+        rollupRepository.upsertDelta(
+                emotion.getPatient().getId(),
+                emotion.getTimestamp().toLocalDate(),
+                type == EmotionTypeEnum.HAPPY ? 1 : 0,
+                type == EmotionTypeEnum.SAD ? 1 : 0,
+                type == EmotionTypeEnum.ANGRY ? 1 : 0,
+                type == EmotionTypeEnum.FEAR ? 1 : 0,
+                type == EmotionTypeEnum.NEUTRAL ? 1 : 0,
+                isNegative(type) ? 1 : 0,
+                1,
+                emotion.getConfidence()
+        );
+    }
+
+    /**
+     * Add a batch of one patient's saved emotions with a single upsert per day they fall on
+     */
+    public void recordEmotions(Long patientId, List<Emotion> emotions) {
+        Map<LocalDate, long[]> countsByDay = new TreeMap<>();
+        Map<LocalDate, Double> confidenceByDay = new HashMap<>();
+        for (Emotion emotion : emotions) {
+            LocalDate day = emotion.getTimestamp().toLocalDate();
+            // happy, sad, angry, fear, neutral, negative, total
+            long[] counts = countsByDay.computeIfAbsent(day, d -> new long[7]);
+            EmotionTypeEnum type = emotion.getEmotionType();
+            counts[0] += type == EmotionTypeEnum.HAPPY ? 1 : 0;
+            counts[1] += type == EmotionTypeEnum.SAD ? 1 : 0;
+            counts[2] += type == EmotionTypeEnum.ANGRY ? 1 : 0;
+            counts[3] += type == EmotionTypeEnum.FEAR ? 1 : 0;
+            counts[4] += type == EmotionTypeEnum.NEUTRAL ? 1 : 0;
+            counts[5] += isNegative(type) ? 1 : 0;
+            counts[6]++;
+            confidenceByDay.merge(day, emotion.getConfidence(), Double::sum);
+        }
+        countsByDay.forEach((day, counts) -> rollupRepository.upsertDelta(patientId, day,
+                counts[0], counts[1], counts[2], counts[3], counts[4], counts[5], counts[6],
+                confidenceByDay.get(day)));
+    }
+
+    public static boolean isNegative(EmotionTypeEnum type) {
+        return type == EmotionTypeEnum.SAD || type == EmotionTypeEnum.ANGRY || type == EmotionTypeEnum.FEAR;
+    }
+
+    /**
+     * Populate the rollup table from existing emotions the first time the application starts with it.
+     * Runs before the web server accepts requests so no concurrent insert can race the backfill.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (rollupRepository.count() > 0 || emotionRepository.count() == 0) {
+                return;
+            }
+            int buckets = rollupRepository.backfillFromEmotions();
+            log.info("Backfilled {} daily emotion rollup buckets from existing emotion history", buckets);
+        });
+    }
+}
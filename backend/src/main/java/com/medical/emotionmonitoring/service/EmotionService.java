@@ -1,9 +1,11 @@
 package com.medical.emotionmonitoring.service;
 
+import com.medical.emotionmonitoring.dto.CursorPageResponse;
 import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
 import com.medical.emotionmonitoring.dto.EmotionRequest;
 import com.medical.emotionmonitoring.dto.EmotionResponse;
 import com.medical.emotionmonitoring.entity.Alert;
+import com.medical.emotionmonitoring.entity.AlertKind;
 import com.medical.emotionmonitoring.entity.Emotion;
 import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
 import com.medical.emotionmonitoring.entity.Role;
@@ -12,15 +14,32 @@ import com.medical.emotionmonitoring.exception.BusinessException;
 import com.medical.emotionmonitoring.exception.EntityNotFoundException;
 import com.medical.emotionmonitoring.repository.EmotionRepository;
 import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.util.KeysetCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -31,6 +50,16 @@ public class EmotionService {
     private final UserRepository userRepository;
     private final AlertService alertService;
     private final EmotionDetectionService emotionDetectionService;
+    private final EmotionPatternDetector emotionPatternDetector;
+    private final AlertDeduplicationService alertDeduplicationService;
+    private final EmotionRollupService emotionRollupService;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    private static final Duration DETECTED_ALERT_DEDUP_WINDOW = Duration.ofSeconds(30);
+    private static final Duration PATTERN_ALERT_DEDUP_WINDOW = Duration.ofHours(1);
+    private static final int MAX_HISTORY_PAGE_SIZE = 500;
 
     @Transactional
     public EmotionResponse createEmotion(Long patientId, EmotionRequest request) {
@@ -44,27 +73,127 @@ public class EmotionService {
         emotion.setTimestamp(request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now());
 
         Emotion savedEmotion = emotionRepository.save(emotion);
+        emotionRollupService.recordEmotion(savedEmotion);
 
         // Create alert for every detected emotion
         createEmotionAlert(patientId, savedEmotion);
 
-        // Check for 3 consecutive SAD emotions and trigger alert (additional alert)
-        checkAndTriggerSadAlert(patientId);
+        // Check for N consecutive emotions of the configured type and trigger alert (additional alert)
+        checkAndTriggerPatternAlert(patientId, savedEmotion);
 
         return mapToResponse(savedEmotion);
     }
 
     /**
-     * Detect emotion from image and save it
+     * Save a batch of one patient's readings in a single transaction. Emotion ids come from a pooled
+     * generator, so the inserts go out in JDBC batches; rollups get one upsert per day, and the alert
+     * rules run once for the whole batch: one detection alert per emotion type, for the newest reading
+     * of that type, and at most one pattern alert.
      */
     @Transactional
-    public EmotionResponse createEmotionFromImage(Long patientId, MultipartFile imageFile) {
+    public int createEmotions(Long patientId, List<EmotionRequest> requests) {
+        long start = System.nanoTime();
         User patient = userRepository.findById(patientId)
                 .orElseThrow(() -> new EntityNotFoundException("Patient not found with id: " + patientId));
 
+        int saved = saveBatches(List.of(patient), Map.of(patientId, requests)).get(patientId).size();
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        meterRegistry.timer("emotion.batch.save").record(elapsed);
+        meterRegistry.counter("emotion.batch.rows").increment(saved);
+        log.info("Saved {} emotions for patient {} in {} ms ({} rows/s)", saved, patientId,
+                elapsed.toMillis(), saved * 1_000_000_000L / Math.max(1, elapsed.toNanos()));
+        return saved;
+    }
+
+    /**
+     * Save the readings of several patients in one transaction (a write-behind group commit), handled
+     * per patient like {@link #createEmotions}. Returns each patient's saved readings in request order;
+     * patients that no longer exist are left out.
+     */
+    @Transactional
+    public Map<Long, List<EmotionResponse>> createEmotionGroup(Map<Long, List<EmotionRequest>> requestsByPatient) {
+        List<User> patients = userRepository.findAllById(requestsByPatient.keySet());
+        Map<Long, List<EmotionResponse>> responses = new HashMap<>();
+        saveBatches(patients, requestsByPatient).forEach((patientId, emotions) ->
+                responses.put(patientId, emotions.stream().map(this::mapToResponse).toList()));
+        return responses;
+    }
+
+    private Map<Long, List<Emotion>> saveBatches(List<User> patients, Map<Long, List<EmotionRequest>> requestsByPatient) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, List<Emotion>> batches = new LinkedHashMap<>();
+        List<User> patternMatches = new ArrayList<>();
+        for (User patient : patients) {
+            List<Emotion> emotions = new ArrayList<>();
+            for (EmotionRequest request : requestsByPatient.get(patient.getId())) {
+                Emotion emotion = new Emotion();
+                emotion.setEmotionType(request.getEmotionType());
+                emotion.setConfidence(request.getConfidence());
+                emotion.setPatient(patient);
+                emotion.setTimestamp(request.getTimestamp() != null ? request.getTimestamp() : now);
+                emotions.add(emotion);
+            }
+            // Oldest first, so the pattern rule sees the readings in the order they were taken. It runs
+            // before any insert so that a cold-start window is loaded without this batch in it.
+            List<Emotion> chronological = emotions.stream()
+                    .sorted(Comparator.comparing(Emotion::getTimestamp))
+                    .toList();
+            if (emotionPatternDetector.recordAllAndMatch(patient.getId(), chronological)) {
+                patternMatches.add(patient);
+            }
+            batches.put(patient.getId(), emotions);
+        }
+
+        // Every insert is queued before the first rollup upsert flushes them, so they go out in full batches
+        batches.values().forEach(emotionRepository::saveAll);
+        batches.forEach(emotionRollupService::recordEmotions);
+        // Write the batch now and stop tracking it, so the alert queries below do not dirty-check it
+        entityManager.flush();
+        entityManager.clear();
+
+        // Detection alerts are deduplicated per emotion type, so each type in the batch gets its own chance
+        // to alert, with its newest reading
+        batches.forEach((patientId, emotions) -> emotions.stream()
+                .collect(Collectors.toMap(Emotion::getEmotionType, Function.identity(),
+                        BinaryOperator.maxBy(Comparator.comparing(Emotion::getTimestamp)),
+                        () -> new EnumMap<>(EmotionTypeEnum.class)))
+                .values()
+                .forEach(emotion -> createEmotionAlert(patientId, emotion)));
+        patternMatches.forEach(patient -> triggerPatternAlert(patient.getId(), patient));
+        return batches;
+    }
+
+    /**
+     * Detect the emotion in an uploaded image and save it. The provider call runs before the
+     * transaction starts so a slow detection never holds a database connection.
+     */
+    public EmotionResponse createEmotionFromImage(Long patientId, MultipartFile imageFile) {
+        if (!userRepository.existsById(patientId)) {
+            throw new EntityNotFoundException("Patient not found with id: " + patientId);
+        }
+
         // Detect emotion from image
         EmotionDetectionResponse detectionResponse = emotionDetectionService.detectEmotionFromImage(imageFile);
-        
+
+        return new TransactionTemplate(transactionManager)
+                .execute(status -> saveDetectedEmotion(patientId, detectionResponse));
+    }
+
+    /**
+     * Save the result of a detection that already ran outside of any transaction
+     */
+    @Transactional
+    public EmotionResponse saveDetectedEmotion(Long patientId, EmotionDetectionResponse detectionResponse) {
+        User patient = userRepository.findById(patientId)
+                .orElseThrow(() -> new EntityNotFoundException("Patient not found with id: " + patientId));
+
+        return saveDetectedEmotion(patient, detectionResponse);
+    }
+
+    private EmotionResponse saveDetectedEmotion(User patient, EmotionDetectionResponse detectionResponse) {
+        Long patientId = patient.getId();
+
         // Map detected emotion to EmotionTypeEnum
         EmotionTypeEnum emotionType = emotionDetectionService.mapToEmotionTypeEnum(detectionResponse.getEmotion());
         Double confidence = detectionResponse.getConfidence();
@@ -77,12 +206,13 @@ public class EmotionService {
         emotion.setTimestamp(LocalDateTime.now());
 
         Emotion savedEmotion = emotionRepository.save(emotion);
+        emotionRollupService.recordEmotion(savedEmotion);
 
         // Create alert for every detected emotion
         createEmotionAlert(patientId, savedEmotion);
 
-        // Check for 3 consecutive SAD emotions and trigger alert (additional alert)
-        checkAndTriggerSadAlert(patientId);
+        // Check for N consecutive emotions of the configured type and trigger alert (additional alert)
+        checkAndTriggerPatternAlert(patientId, savedEmotion);
 
         log.info("Emotion detected from image for patient {}: {} with confidence {}", 
                 patientId, emotionType, confidence);
@@ -101,22 +231,14 @@ public class EmotionService {
             
             // Check if an alert was already created recently (within last 30 seconds) to avoid spam
             // Reduced from 5 minutes to 30 seconds for real-time notifications
-            List<Alert> recentAlerts = alertService.getAlertsByPatientId(patientId);
-            LocalDateTime thirtySecondsAgo = LocalDateTime.now().minusSeconds(30);
-            
-            boolean recentAlertExists = recentAlerts.stream()
-                    .anyMatch(alert -> alert.getCreatedAt().isAfter(thirtySecondsAgo) 
-                            && alert.getMessage().contains("New emotion detected")
-                            && alert.getMessage().contains(emotion.getEmotionType().toString()));
-
-            if (recentAlertExists) {
+            if (alertDeduplicationService.isDuplicate(patientId, AlertKind.EMOTION_DETECTED,
+                    emotion.getEmotionType(), DETECTED_ALERT_DEDUP_WINDOW)) {
                 log.debug("⚠️ Alert already exists for patient {} within the last 30 seconds for emotion {}, skipping duplicate alert", 
                         patientId, emotion.getEmotionType());
                 return;
             }
 
-            User patient = userRepository.findById(patientId)
-                    .orElseThrow(() -> new EntityNotFoundException("Patient not found with id: " + patientId));
+            User patient = emotion.getPatient();
 
             String emotionTypeName = emotion.getEmotionType().toString();
             String confidencePercent = String.format("%.1f%%", emotion.getConfidence() * 100);
@@ -129,7 +251,8 @@ public class EmotionService {
             );
 
             log.info("📤 Creating alert with message: {}", message);
-            Alert createdAlert = alertService.createAlert(patientId, message);
+            Alert createdAlert = alertService.createAlert(patientId, message,
+                    AlertKind.EMOTION_DETECTED, emotion.getEmotionType());
             log.info("✅ Real-time alert CREATED SUCCESSFULLY! Alert ID: {} for patient {} - emotion: {} (confidence: {})", 
                     createdAlert.getId(), patientId, emotionTypeName, confidencePercent);
         } catch (EntityNotFoundException e) {
@@ -149,53 +272,40 @@ public class EmotionService {
     }
 
     /**
-     * Check if patient has 3 consecutive SAD emotions and trigger an alert
+     * Check if patient's newest emotions match the configured consecutive-emotion rule and trigger an alert
      * Only creates an alert if one hasn't been created recently for the same pattern
      */
-    private void checkAndTriggerSadAlert(Long patientId) {
-        List<Emotion> recentEmotions = emotionRepository.findByPatientIdOrderByTimestampDesc(patientId);
-
-        // Check if we have at least 3 emotions
-        if (recentEmotions.size() < 3) {
+    private void checkAndTriggerPatternAlert(Long patientId, Emotion savedEmotion) {
+        if (!emotionPatternDetector.recordAndMatch(savedEmotion)) {
             return;
         }
+        triggerPatternAlert(patientId, savedEmotion.getPatient());
+    }
 
-        // Get the last 3 emotions (most recent first)
-        List<Emotion> lastThreeEmotions = recentEmotions.subList(0, Math.min(3, recentEmotions.size()));
-
-        // Check if all 3 are SAD
-        boolean allSad = lastThreeEmotions.stream()
-                .allMatch(e -> e.getEmotionType() == EmotionTypeEnum.SAD);
-
-        if (allSad) {
-            // Check if an alert was already created recently (within last hour) to avoid duplicates
-            List<Alert> recentAlerts = alertService.getAlertsByPatientId(patientId);
-            LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-            
-            boolean recentAlertExists = recentAlerts.stream()
-                    .anyMatch(alert -> alert.getCreatedAt().isAfter(oneHourAgo) 
-                            && alert.getMessage().contains("3 consecutive SAD emotions"));
-
-            if (recentAlertExists) {
-                log.debug("Alert already exists for patient {} within the last hour, skipping duplicate alert", patientId);
-                return;
-            }
+    private void triggerPatternAlert(Long patientId, User patient) {
+        String pattern = String.format("%d consecutive %s emotions",
+                emotionPatternDetector.getConsecutiveCount(), emotionPatternDetector.getEmotionType());
 
-            User patient = userRepository.findById(patientId)
-                    .orElseThrow(() -> new EntityNotFoundException("Patient not found with id: " + patientId));
+        // Check if an alert was already created recently (within last hour) to avoid duplicates
+        if (alertDeduplicationService.isDuplicate(patientId, AlertKind.EMOTION_PATTERN,
+                emotionPatternDetector.getEmotionType(), PATTERN_ALERT_DEDUP_WINDOW)) {
+            log.debug("Alert already exists for patient {} within the last hour, skipping duplicate alert", patientId);
+            return;
+        }
 
-            String message = String.format(
-                    "Alert: Patient %s has recorded 3 consecutive SAD emotions. Please review their emotional state.",
-                    patient.getFullName()
-            );
+        String message = String.format(
+                "Alert: Patient %s has recorded %s. Please review their emotional state.",
+                patient.getFullName(),
+                pattern
+        );
 
-            try {
-                alertService.createAlert(patientId, message);
-                log.info("Alert created for patient {} due to 3 consecutive SAD emotions", patientId);
-            } catch (Exception e) {
-                log.error("Failed to create alert for patient {}: {}", patientId, e.getMessage());
-                // Don't throw exception - alert creation failure shouldn't break emotion creation
-            }
+        try {
+            alertService.createAlert(patientId, message,
+                    AlertKind.EMOTION_PATTERN, emotionPatternDetector.getEmotionType());
+            log.info("Alert created for patient {} due to {}", patientId, pattern);
+        } catch (Exception e) {
+            log.error("Failed to create alert for patient {}: {}", patientId, e.getMessage());
+            // Don't throw exception - alert creation failure shouldn't break emotion creation
         }
     }
 
@@ -211,6 +321,70 @@ public class EmotionService {
     }
 
     public List<EmotionResponse> getEmotionHistoryByPatientId(Long patientId, Long currentUserId, Role currentUserRole) {
+        verifyHistoryAccess(patientId, currentUserId, currentUserRole);
+
+        List<Emotion> emotions = emotionRepository.findByPatientIdOrderByTimestampDesc(patientId);
+        return emotions.stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get one page of a patient's emotion history, newest first, using keyset pagination on (timestamp, id)
+     */
+    public CursorPageResponse<EmotionResponse> getEmotionHistoryPage(Long patientId, Long currentUserId,
+                                                                     Role currentUserRole, String cursor, int limit) {
+        verifyHistoryAccess(patientId, currentUserId, currentUserRole);
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        // Fetch one extra row to find out whether another page follows
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<Emotion> emotions;
+        if (cursor == null || cursor.isBlank()) {
+            emotions = emotionRepository.findByPatientIdOrderByTimestampDescIdDesc(patientId, pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            emotions = emotionRepository.findByPatientIdBeforeCursor(patientId, after.timestamp(), after.id(), pageRequest);
+        }
+
+        boolean hasMore = emotions.size() > pageSize;
+        List<Emotion> page = hasMore ? emotions.subList(0, pageSize) : emotions;
+        String nextCursor = null;
+        if (hasMore) {
+            Emotion last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getTimestamp(), last.getId()).encode();
+        }
+
+        return new CursorPageResponse<>(
+                page.stream().map(this::mapToResponse).collect(Collectors.toList()),
+                nextCursor,
+                hasMore
+        );
+    }
+
+    /**
+     * Stream a patient's full emotion history, newest first, without materialising it in memory.
+     * Access must have been checked with {@link #verifyHistoryAccess} beforehand.
+     */
+    @Transactional(readOnly = true)
+    public void streamEmotionHistory(Long patientId, Consumer<EmotionResponse> consumer) {
+        // Load the patient before opening the stream: a streaming MySQL result set does not allow
+        // other queries on the connection, and every row maps to this already-managed patient
+        userRepository.findById(patientId)
+                .orElseThrow(() -> new EntityNotFoundException("Patient not found with id: " + patientId));
+
+        try (Stream<Emotion> emotions = emotionRepository.streamByPatientId(patientId)) {
+            emotions.forEach(emotion -> {
+                consumer.accept(mapToResponse(emotion));
+                entityManager.detach(emotion);
+            });
+        }
+    }
+
+    /**
+     * Check that the patient exists and the current user may view their emotion history
+     */
+    public void verifyHistoryAccess(Long patientId, Long currentUserId, Role currentUserRole) {
         // Check if patient exists
         if (!userRepository.existsById(patientId)) {
             throw new EntityNotFoundException("Patient not found with id: " + patientId);
@@ -220,11 +394,6 @@ public class EmotionService {
         if (currentUserRole == Role.PATIENT && !patientId.equals(currentUserId)) {
             throw new BusinessException("Unauthorized: Patients can only view their own emotion history");
         }
-
-        List<Emotion> emotions = emotionRepository.findByPatientIdOrderByTimestampDesc(patientId);
-        return emotions.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
     }
 
     private EmotionResponse mapToResponse(Emotion emotion) {
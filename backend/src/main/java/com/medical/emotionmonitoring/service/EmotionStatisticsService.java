@@ -1,30 +1,31 @@
 package com.medical.emotionmonitoring.service;
 
 import com.medical.emotionmonitoring.dto.EmotionStatisticsResponse;
-import com.medical.emotionmonitoring.entity.Emotion;
+import com.medical.emotionmonitoring.entity.EmotionDailyRollup;
 import com.medical.emotionmonitoring.entity.EmotionTypeEnum;
-import com.medical.emotionmonitoring.repository.EmotionRepository;
+import com.medical.emotionmonitoring.repository.EmotionDailyRollupRepository;
+import com.medical.emotionmonitoring.repository.EmotionDailyRollupRepository.RollupTotals;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.DayOfWeek;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class EmotionStatisticsService {
 
-    private final EmotionRepository emotionRepository;
+    private final EmotionDailyRollupRepository rollupRepository;
 
+    /**
+     * Compute patient statistics from the daily rollup buckets instead of the raw emotion history
+     */
     public EmotionStatisticsResponse getPatientStatistics(Long patientId) {
-        List<Emotion> emotions = emotionRepository.findByPatientIdOrderByTimestampDesc(patientId);
-        
-        if (emotions.isEmpty()) {
+        RollupTotals totals = rollupRepository.sumByPatientId(patientId);
+        long totalEmotions = totals != null ? valueOf(totals.getTotalCount()) : 0;
+
+        if (totalEmotions == 0) {
             return new EmotionStatisticsResponse(
                     "NEUTRAL", 0, new HashMap<>(), new HashMap<>(), 0.0, 0, 0
             );
@@ -32,10 +33,11 @@ public class EmotionStatisticsService {
 
         // Calculate emotion frequency
         Map<String, Integer> emotionFrequency = new HashMap<>();
-        for (Emotion emotion : emotions) {
-            String emotionType = emotion.getEmotionType().name();
-            emotionFrequency.put(emotionType, emotionFrequency.getOrDefault(emotionType, 0) + 1);
-        }
+        putIfRecorded(emotionFrequency, EmotionTypeEnum.HAPPY, totals.getHappyCount());
+        putIfRecorded(emotionFrequency, EmotionTypeEnum.SAD, totals.getSadCount());
+        putIfRecorded(emotionFrequency, EmotionTypeEnum.ANGRY, totals.getAngryCount());
+        putIfRecorded(emotionFrequency, EmotionTypeEnum.FEAR, totals.getFearCount());
+        putIfRecorded(emotionFrequency, EmotionTypeEnum.NEUTRAL, totals.getNeutralCount());
 
         // Find most frequent emotion
         String mostFrequentEmotion = emotionFrequency.entrySet().stream()
@@ -44,31 +46,23 @@ public class EmotionStatisticsService {
                 .orElse("NEUTRAL");
         Integer mostFrequentEmotionCount = emotionFrequency.getOrDefault(mostFrequentEmotion, 0);
 
-        // Calculate weekly emotion count (last 7 days)
+        // Calculate weekly emotion count (today and the 6 previous days, one bucket per day)
         Map<String, Integer> weeklyEmotionCount = new HashMap<>();
-        LocalDateTime weekAgo = LocalDateTime.now().minus(7, ChronoUnit.DAYS);
-        for (Emotion emotion : emotions) {
-            if (emotion.getTimestamp().isAfter(weekAgo)) {
-                DayOfWeek dayOfWeek = emotion.getTimestamp().getDayOfWeek();
-                String dayName = dayOfWeek.name();
-                weeklyEmotionCount.put(dayName, weeklyEmotionCount.getOrDefault(dayName, 0) + 1);
-            }
+        LocalDate weekStart = LocalDate.now().minusDays(6);
+        for (EmotionDailyRollup bucket : rollupRepository.findByPatientIdAndBucketDateGreaterThanEqual(patientId, weekStart)) {
+            String dayName = bucket.getBucketDate().getDayOfWeek().name();
+            weeklyEmotionCount.merge(dayName, bucket.getTotalCount().intValue(), Integer::sum);
         }
 
         // Calculate average confidence
-        Double averageConfidence = emotions.stream()
-                .mapToDouble(Emotion::getConfidence)
-                .average()
-                .orElse(0.0);
+        Double averageConfidence = totals.getConfidenceSum() != null
+                ? totals.getConfidenceSum() / totalEmotions
+                : 0.0;
 
         // Calculate stress level (0-100)
         // Based on percentage of negative emotions (SAD, ANGRY, FEAR)
-        long negativeEmotionsCount = emotions.stream()
-                .filter(e -> e.getEmotionType() == EmotionTypeEnum.SAD ||
-                            e.getEmotionType() == EmotionTypeEnum.ANGRY ||
-                            e.getEmotionType() == EmotionTypeEnum.FEAR)
-                .count();
-        Integer stressLevel = (int) Math.round((negativeEmotionsCount * 100.0) / emotions.size());
+        long negativeEmotionsCount = valueOf(totals.getNegativeCount());
+        Integer stressLevel = (int) Math.round((negativeEmotionsCount * 100.0) / totalEmotions);
 
         return new EmotionStatisticsResponse(
                 mostFrequentEmotion,
@@ -76,10 +70,18 @@ public class EmotionStatisticsService {
                 emotionFrequency,
                 weeklyEmotionCount,
                 averageConfidence,
-                emotions.size(),
+                (int) totalEmotions,
                 stressLevel
         );
     }
-}
 
+    private void putIfRecorded(Map<String, Integer> frequency, EmotionTypeEnum type, Long count) {
+        if (valueOf(count) > 0) {
+            frequency.put(type.name(), count.intValue());
+        }
+    }
 
+    private long valueOf(Long count) {
+        return count != null ? count : 0;
+    }
+}
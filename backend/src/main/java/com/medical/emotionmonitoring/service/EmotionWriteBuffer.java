@@ -0,0 +1,302 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.dto.EmotionRequest;
+import com.medical.emotionmonitoring.dto.EmotionResponse;
+import com.medical.emotionmonitoring.exception.EntityNotFoundException;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind path for {@code POST /emotions}, enabled with {@code emotion.write-behind.enabled}.
+ * Readings go into a bounded buffer and a single flusher thread saves them in group commits: one
+ * transaction per {@code max-batch-size} readings or {@code flush-interval-ms}, whichever comes first,
+ * instead of one per reading.
+ *
+ * <p>With durability {@code AFTER_FLUSH} a request waits for the commit that contains its reading; with
+ * {@code AFTER_BUFFER} it returns as soon as the reading is buffered, so readings still buffered when
+ * the process dies are lost. A full buffer rejects readings with 429. On shutdown intake stops and
+ * everything buffered is flushed.
+ *
+ * <p>A group commit that fails on a transient database error is retried; if it still fails, each
+ * patient's readings are committed on their own so one bad patient cannot take the rest of the group
+ * with it. Only readings whose own commit fails are dropped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "emotion.write-behind.enabled", havingValue = "true")
+public class EmotionWriteBuffer {
+
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    public enum Durability {
+        AFTER_BUFFER,
+        AFTER_FLUSH
+    }
+
+    private final EmotionService emotionService;
+    private final BlockingQueue<PendingEmotion> buffer;
+    private final Durability durability;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final long retryAfterSeconds;
+    private final long submitTimeoutMillis;
+    private final int commitAttempts;
+    private final long commitRetryBackoffMillis;
+    private final ExecutorService flusher =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("emotion-flush-"));
+    private final Timer flushTimer;
+    private final Counter savedRows;
+    private final Counter droppedRows;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public EmotionWriteBuffer(
+            EmotionService emotionService,
+            MeterRegistry meterRegistry,
+            @Value("${emotion.write-behind.durability:AFTER_FLUSH}") Durability durability,
+            @Value("${emotion.write-behind.capacity:10000}") int capacity,
+            @Value("${emotion.write-behind.max-batch-size:500}") int maxBatchSize,
+            @Value("${emotion.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+            @Value("${emotion.write-behind.retry-after-seconds:1}") long retryAfterSeconds,
+            @Value("${emotion.write-behind.submit-timeout-ms:5000}") long submitTimeoutMillis,
+            @Value("${emotion.write-behind.commit-attempts:3}") int commitAttempts,
+            @Value("${emotion.write-behind.commit-retry-backoff-ms:100}") long commitRetryBackoffMillis) {
+        this.emotionService = emotionService;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.durability = durability;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.commitAttempts = Math.max(1, commitAttempts);
+        this.commitRetryBackoffMillis = commitRetryBackoffMillis;
+
+        Gauge.builder("emotion.write-behind.buffered", pending, AtomicInteger::get)
+                .description("Emotion readings waiting for a group commit")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("emotion.write-behind.flush")
+                .description("Group commits of buffered emotion readings")
+                .register(meterRegistry);
+        this.savedRows = Counter.builder("emotion.write-behind.rows")
+                .tag("result", "saved")
+                .description("Buffered emotion readings by outcome")
+                .register(meterRegistry);
+        this.droppedRows = Counter.builder("emotion.write-behind.rows")
+                .tag("result", "dropped")
+                .description("Buffered emotion readings by outcome")
+                .register(meterRegistry);
+
+        flusher.execute(this::flushLoop);
+        log.info("Write-behind emotion ingest: durability {}, capacity {}, group commits of up to {} rows every {} ms",
+                durability, capacity, maxBatchSize, flushIntervalMillis);
+    }
+
+    /**
+     * Buffer a reading. Returns the saved reading once committed ({@code AFTER_FLUSH}), or empty as soon
+     * as it is buffered ({@code AFTER_BUFFER}). An {@code AFTER_FLUSH} request that is not committed
+     * within {@code submit-timeout-ms} also returns empty: its reading stays buffered and is saved later.
+     */
+    public Optional<EmotionResponse> submit(Long patientId, EmotionRequest request) {
+        // Stamp the reading when it arrives, not when its group is committed
+        EmotionRequest stamped = new EmotionRequest(request.getEmotionType(), request.getConfidence(),
+                request.getTimestamp() != null ? request.getTimestamp() : LocalDateTime.now());
+        PendingEmotion reading = new PendingEmotion(patientId, stamped, new CompletableFuture<>());
+        pending.incrementAndGet();
+        if (!running || !buffer.offer(reading)) {
+            pending.decrementAndGet();
+            throw new TooManyRequestsException(
+                    "Too many emotion readings waiting to be saved. Please retry shortly.", retryAfterSeconds);
+        }
+        if (durability == Durability.AFTER_BUFFER) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(reading.saved().get(submitTimeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("Emotion of patient {} not committed within {} ms; answering before its group commit",
+                    patientId, submitTimeoutMillis);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the emotion to be saved", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw new IllegalStateException("Saving the emotion failed", e.getCause());
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingEmotion> batch = new ArrayList<>(maxBatchSize);
+        long deadline = 0;
+        try {
+            while (running || !buffer.isEmpty()) {
+                // Short polls, so shutdown is noticed without waiting out the flush interval
+                PendingEmotion next = buffer.poll(POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+                if (next != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + flushIntervalNanos;
+                    }
+                    batch.add(next);
+                    buffer.drainTo(batch, maxBatchSize - batch.size());
+                }
+                // Commit once the batch is full, the interval since its first reading is over, or on shutdown
+                if (!batch.isEmpty() && (batch.size() >= maxBatchSize || System.nanoTime() >= deadline || !running)) {
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(batch);
+    }
+
+    private void flush(List<PendingEmotion> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            commit(batch);
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    private void commit(List<PendingEmotion> batch) {
+        Map<Long, List<PendingEmotion>> byPatient = new LinkedHashMap<>();
+        batch.forEach(reading -> byPatient.computeIfAbsent(reading.patientId(), id -> new ArrayList<>()).add(reading));
+        Map<Long, List<EmotionRequest>> requests = new LinkedHashMap<>();
+        byPatient.forEach((patientId, readings) ->
+                requests.put(patientId, readings.stream().map(PendingEmotion::request).toList()));
+
+        Map<Long, List<EmotionResponse>> saved;
+        try {
+            saved = flushTimer.record(() -> commitWithRetry(requests));
+        } catch (RuntimeException e) {
+            if (byPatient.size() == 1) {
+                drop(byPatient.values().iterator().next(), e);
+                return;
+            }
+            // Split the group so a failure is confined to the patient whose readings cause it
+            log.warn("Group commit of {} buffered emotion(s) failed; committing each of {} patients on their own",
+                    batch.size(), byPatient.size(), e);
+            byPatient.forEach((patientId, readings) -> {
+                try {
+                    complete(patientId, readings,
+                            commitWithRetry(Map.of(patientId, requests.get(patientId))).get(patientId));
+                } catch (RuntimeException patientFailure) {
+                    drop(readings, patientFailure);
+                }
+            });
+            return;
+        }
+
+        byPatient.forEach((patientId, readings) -> complete(patientId, readings, saved.get(patientId)));
+    }
+
+    /**
+     * Commit a group, retrying transient database failures with a linear backoff
+     */
+    private Map<Long, List<EmotionResponse>> commitWithRetry(Map<Long, List<EmotionRequest>> requests) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return emotionService.createEmotionGroup(requests);
+            } catch (RuntimeException e) {
+                if (attempt >= commitAttempts || !isTransient(e)) {
+                    throw e;
+                }
+                log.warn("Group commit attempt {} of {} failed transiently, retrying: {}",
+                        attempt, commitAttempts, e.getMessage());
+                try {
+                    Thread.sleep(commitRetryBackoffMillis * attempt);
+                } catch (InterruptedException interrupted) {
+                    // Shutting down: give up on the retries, the caller drops what is left
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void complete(Long patientId, List<PendingEmotion> readings, List<EmotionResponse> responses) {
+        if (responses == null) {
+            droppedRows.increment(readings.size());
+            log.warn("Dropped {} buffered emotion(s) of patient {}, who no longer exists", readings.size(), patientId);
+            readings.forEach(reading -> reading.saved().completeExceptionally(
+                    new EntityNotFoundException("Patient not found with id: " + patientId)));
+            return;
+        }
+        savedRows.increment(responses.size());
+        for (int i = 0; i < readings.size(); i++) {
+            readings.get(i).saved().complete(responses.get(i));
+        }
+    }
+
+    private void drop(List<PendingEmotion> readings, RuntimeException e) {
+        droppedRows.increment(readings.size());
+        log.error("Commit of {} buffered emotion(s) of patient {} failed; they are dropped",
+                readings.size(), readings.get(0).patientId(), e);
+        readings.forEach(reading -> reading.saved().completeExceptionally(e));
+    }
+
+    /**
+     * Stop taking readings and flush the buffer; runs before the database beans this one depends on close
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+            flusher.shutdownNow();
+            log.warn("Emotion flusher did not finish in time; {} buffered emotion(s) dropped", buffer.size());
+            return;
+        }
+        // Readings offered while intake was closing
+        List<PendingEmotion> late = new ArrayList<>();
+        buffer.drainTo(late);
+        flush(late);
+        log.info("Emotion write buffer flushed and closed");
+    }
+
+    private record PendingEmotion(Long patientId, EmotionRequest request, CompletableFuture<EmotionResponse> saved) {
+    }
+}
@@ -0,0 +1,344 @@
+package com.medical.emotionmonitoring.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shrinks uploads before they are sent to a provider: the image is decoded, optionally cropped to
+ * its centre (where the capture screen frames the face), turned upright according to its EXIF
+ * orientation, scaled so its longest side is at most {@code emotion.preprocess.max-dimension} and
+ * re-encoded as JPEG at a fixed quality. Classifiers work on small face images, so the full-resolution
+ * pixels only cost upload bandwidth and provider time.
+ *
+ * <p>Large images are decoded with subsampling so the decoded copy is close to the target size, and
+ * the scaling canvas, JPEG writer and output buffer are pooled. Images below
+ * {@code emotion.preprocess.min-bytes}, that cannot be decoded, or that are already upright and would
+ * not get smaller are passed through unchanged.
+ */
+@Slf4j
+@Component
+public class ImagePreprocessor {
+
+    private static final int SOI_MARKER = 0xFFD8;
+    private static final int APP1_MARKER = 0xFFE1;
+    private static final int SOS_MARKER = 0xFFDA;
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean enabled;
+    private final long minBytes;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final double cropFraction;
+    private final BlockingQueue<Workspace> workspaces;
+
+    private final Timer duration;
+    private final Counter processed;
+    private final Counter passedThrough;
+    private final DistributionSummary bytesSaved;
+
+    public ImagePreprocessor(
+            MeterRegistry meterRegistry,
+            @Value("${emotion.preprocess.enabled:true}") boolean enabled,
+            @Value("${emotion.preprocess.min-bytes:65536}") long minBytes,
+            @Value("${emotion.preprocess.max-dimension:448}") int maxDimension,
+            @Value("${emotion.preprocess.jpeg-quality:0.85}") float jpegQuality,
+            @Value("${emotion.preprocess.crop:NONE}") CropMode crop,
+            @Value("${emotion.preprocess.crop-fraction:0.8}") double cropFraction,
+            @Value("${emotion.preprocess.pool-size:8}") int poolSize) {
+        if (cropFraction <= 0 || cropFraction > 1) {
+            throw new IllegalArgumentException("emotion.preprocess.crop-fraction must be in (0, 1]");
+        }
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.cropFraction = crop == CropMode.CENTER ? cropFraction : 1.0;
+        this.workspaces = new ArrayBlockingQueue<>(poolSize);
+
+        this.duration = Timer.builder("emotion.preprocess.duration")
+                .description("Time spent decoding, scaling and re-encoding an upload")
+                .register(meterRegistry);
+        this.processed = Counter.builder("emotion.preprocess.images")
+                .tag("result", "processed")
+                .register(meterRegistry);
+        this.passedThrough = Counter.builder("emotion.preprocess.images")
+                .tag("result", "passthrough")
+                .register(meterRegistry);
+        this.bytesSaved = DistributionSummary.builder("emotion.preprocess.bytes.saved")
+                .description("Upload bytes saved per image by preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public enum CropMode {
+        NONE,
+        CENTER
+    }
+
+    /**
+     * Image as sent to a provider
+     */
+    public record PreparedImage(InputStreamSource source, long size) {
+    }
+
+    /**
+     * Decode, crop, scale and re-encode the image, or return it unchanged if that does not help
+     */
+    public PreparedImage prepare(InputStreamSource image, long imageSize) {
+        PreparedImage original = new PreparedImage(image, imageSize);
+        // Small uploads cost less to send than to decode and re-encode
+        if (!enabled || imageSize < minBytes) {
+            return original;
+        }
+
+        long start = System.nanoTime();
+        Workspace workspace = workspaces.poll();
+        if (workspace == null) {
+            workspace = new Workspace();
+        }
+        try {
+            Decoded decoded = decode(image);
+            if (decoded == null) {
+                log.debug("Image format not recognised; sending the upload unchanged");
+                passedThrough.increment();
+                return original;
+            }
+
+            int encodedSize = workspace.encode(decoded.image(), decoded.orientation());
+            // A rotated photo is re-encoded upright even when that is not smaller: the re-encode drops
+            // the orientation tag, and providers that ignore it would see a sideways face
+            if (encodedSize >= imageSize && decoded.orientation() == 1) {
+                passedThrough.increment();
+                return original;
+            }
+
+            byte[] bytes = workspace.copyOutput();
+            processed.increment();
+            bytesSaved.record(imageSize - bytes.length);
+            log.debug("Preprocessed image ({}x{} decoded, orientation {}) from {} to {} bytes in {} ms",
+                    decoded.image().getWidth(), decoded.image().getHeight(), decoded.orientation(),
+                    imageSize, bytes.length,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return new PreparedImage(new ByteArrayResource(bytes), bytes.length);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Image preprocessing failed, sending the upload unchanged: {}", e.getMessage());
+            passedThrough.increment();
+            return original;
+        } finally {
+            workspace.reset();
+            workspaces.offer(workspace);
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Decode only the crop region, subsampled so it is at most about twice the target size;
+     * the final bilinear scaling then starts from a small image. The centre crop is square, so it is
+     * the same region whichever way the image is stored. Returns null if no reader applies.
+     */
+    private Decoded decode(InputStreamSource image) throws IOException {
+        try (InputStream in = image.getInputStream();
+             ImageInputStream imageIn = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            int orientation = readOrientation(imageIn);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int side = (int) (Math.min(width, height) * cropFraction);
+                Rectangle region = cropFraction < 1.0
+                        ? new Rectangle((width - side) / 2, (height - side) / 2, side, side)
+                        : new Rectangle(0, 0, width, height);
+                param.setSourceRegion(region);
+                int subsampling = Math.max(1, Math.max(region.width, region.height) / (2 * maxDimension));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Decoded(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The EXIF orientation (1-8) of a JPEG, from the Orientation tag of its APP1 segment; 1 (upright)
+     * when there is none. The header segments are scanned directly rather than through the JPEG
+     * reader's metadata, which rejects files whose Exif segment comes before the JFIF one.
+     */
+    private static int readOrientation(ImageInputStream in) throws IOException {
+        long start = in.getStreamPosition();
+        try {
+            if (in.readUnsignedShort() != SOI_MARKER) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // Image data starts at SOS; anything that is not a marker means a damaged header
+                if ((marker & 0xFF00) != 0xFF00 || marker == SOS_MARKER) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                if (marker == APP1_MARKER) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    int orientation = exifOrientation(segment);
+                    if (orientation != 0) {
+                        return orientation;
+                    }
+                } else {
+                    in.skipBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return 1;
+        } finally {
+            in.seek(start);
+        }
+    }
+
+    /**
+     * Find the Orientation tag in IFD0 of an APP1 Exif segment; 0 if the segment has none
+     */
+    private static int exifOrientation(byte[] segment) {
+        if (segment.length < EXIF_HEADER.length + 8
+                || !Arrays.equals(segment, 0, EXIF_HEADER.length, EXIF_HEADER, 0, EXIF_HEADER.length)) {
+            return 0;
+        }
+        // Offsets inside the segment are relative to the TIFF header that follows "Exif\0\0"
+        ByteBuffer tiff = ByteBuffer.wrap(segment, EXIF_HEADER.length, segment.length - EXIF_HEADER.length).slice();
+        try {
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                    int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return orientation >= 1 && orientation <= 8 ? orientation : 0;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            log.debug("Ignoring a malformed Exif segment: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Maps a stored image of the given size onto its upright orientation
+     */
+    private static AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);       // flipped horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // turned 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);      // flipped vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);            // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);      // turned 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // transversed
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);       // turned 90 counter-clockwise
+            default -> new AffineTransform();
+        };
+    }
+
+    private record Decoded(BufferedImage image, int orientation) {
+    }
+
+    /**
+     * Reusable state for one preprocessing call
+     */
+    private final class Workspace {
+        private final BufferedImage canvas = new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D graphics = canvas.createGraphics();
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        // reset() keeps the grown buffer, so steady-state encoding does not reallocate it
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        private Workspace() {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setBackground(Color.WHITE);
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(jpegQuality);
+        }
+
+        /**
+         * Draw the image upright onto the canvas at the target size (flattening any transparency onto
+         * white) and encode it as JPEG into the output buffer; returns the encoded size
+         */
+        private int encode(BufferedImage image, int orientation) throws IOException {
+            boolean quarterTurn = orientation >= 5;
+            int uprightWidth = quarterTurn ? image.getHeight() : image.getWidth();
+            int uprightHeight = quarterTurn ? image.getWidth() : image.getHeight();
+            double scale = Math.min(1.0, (double) maxDimension / Math.max(uprightWidth, uprightHeight));
+            int width = Math.max(1, (int) Math.round(uprightWidth * scale));
+            int height = Math.max(1, (int) Math.round(uprightHeight * scale));
+            graphics.clearRect(0, 0, width, height);
+
+            // Rotate and scale in the one draw
+            AffineTransform transform = AffineTransform.getScaleInstance(
+                    (double) width / uprightWidth, (double) height / uprightHeight);
+            transform.concatenate(orientationTransform(orientation, image.getWidth(), image.getHeight()));
+            graphics.drawImage(image, transform, null);
+
+            try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(output)) {
+                writer.setOutput(imageOut);
+                writer.write(null, new IIOImage(canvas.getSubimage(0, 0, width, height), null, null), writeParam);
+            }
+            return output.size();
+        }
+
+        private byte[] copyOutput() {
+            return output.toByteArray();
+        }
+
+        private void reset() {
+            writer.setOutput(null);
+            output.reset();
+        }
+    }
+}
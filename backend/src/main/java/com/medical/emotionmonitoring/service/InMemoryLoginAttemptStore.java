@@ -0,0 +1,143 @@
+package com.medical.emotionmonitoring.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-local {@link LoginAttemptStore}. Each email keeps the times of its last
+ * {@code max-attempts} failures in a ring, so the count inside the sliding window is exact, and all
+ * updates are atomic operations on that email's entry: concurrent attempts for different emails never
+ * contend, and attempts for the same email never block. Entries with no failure inside the window
+ * and no lock are swept periodically.
+ */
+@Component
+@ConditionalOnProperty(name = "security.login.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    private final int maxAttempts;
+    private final long windowMillis;
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+    public InMemoryLoginAttemptStore(
+            MeterRegistry meterRegistry,
+            @Value("${security.login.max-attempts:5}") int maxAttempts,
+            @Value("${security.login.attempt-window-minutes:15}") long windowMinutes) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("security.login.max-attempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.windowMillis = Duration.ofMinutes(windowMinutes).toMillis();
+        Gauge.builder("security.login.attempts.tracked", attempts, Map::size)
+                .description("Emails with recent failed logins or an active lock")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int recordFailure(String email, Instant now) {
+        Attempts entry = attempts.computeIfAbsent(key(email), k -> new Attempts(maxAttempts));
+        long millis = now.toEpochMilli();
+        entry.failures.set(Math.floorMod(entry.next.getAndIncrement(), maxAttempts), millis);
+        return entry.countSince(millis - windowMillis);
+    }
+
+    @Override
+    public int failures(String email, Instant now) {
+        Attempts entry = attempts.get(key(email));
+        return entry == null ? 0 : entry.countSince(now.toEpochMilli() - windowMillis);
+    }
+
+    @Override
+    public boolean lock(String email, Instant until) {
+        Attempts entry = attempts.computeIfAbsent(key(email), k -> new Attempts(maxAttempts));
+        long current = entry.lockedUntil.get();
+        if (current > System.currentTimeMillis()) {
+            return false;
+        }
+        return entry.lockedUntil.compareAndSet(current, until.toEpochMilli());
+    }
+
+    @Override
+    public Instant lockedUntil(String email) {
+        Attempts entry = attempts.get(key(email));
+        if (entry == null) {
+            return null;
+        }
+        long until = entry.lockedUntil.get();
+        return until == 0 ? null : Instant.ofEpochMilli(until);
+    }
+
+    @Override
+    public boolean unlock(String email, Instant until) {
+        Attempts entry = attempts.get(key(email));
+        if (entry == null || !entry.lockedUntil.compareAndSet(until.toEpochMilli(), 0)) {
+            return false;
+        }
+        entry.clearFailures();
+        return true;
+    }
+
+    @Override
+    public boolean reset(String email) {
+        Attempts entry = attempts.get(key(email));
+        if (entry == null) {
+            return false;
+        }
+        entry.clearFailures();
+        return entry.lockedUntil.getAndSet(0) != 0;
+    }
+
+    /**
+     * Drop entries that no longer affect any decision. Locked entries are kept even after expiry so the
+     * next attempt still sees the lock and the persisted unlock happens.
+     */
+    @Scheduled(fixedDelayString = "${security.login.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long windowStart = System.currentTimeMillis() - windowMillis;
+        attempts.values().removeIf(entry -> entry.lockedUntil.get() == 0 && entry.countSince(windowStart) == 0);
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * Failure times (epoch millis, 0 = empty slot) and the lock expiry for one email
+     */
+    private static final class Attempts {
+        private final AtomicLongArray failures;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicLong lockedUntil = new AtomicLong();
+
+        private Attempts(int size) {
+            this.failures = new AtomicLongArray(size);
+        }
+
+        private int countSince(long windowStart) {
+            int count = 0;
+            for (int i = 0; i < failures.length(); i++) {
+                if (failures.get(i) > windowStart) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void clearFailures() {
+            for (int i = 0; i < failures.length(); i++) {
+                failures.set(i, 0);
+            }
+        }
+    }
+}
@@ -1,30 +1,85 @@
 package com.medical.emotionmonitoring.service;
 
+import com.medical.emotionmonitoring.util.BoundedCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies JWTs. The signing key and parser are built once; verified claims are kept in a
+ * bounded cache keyed by the SHA-256 of the token, so repeat requests with the same token skip the
+ * signature check until the token expires.
+ */
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long expiration;
+    private final BoundedCache<String, Claims> verifiedTokens;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public JwtService(
+            MeterRegistry meterRegistry,
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.expiration}") long expiration,
+            @Value("${jwt.cache.max-entries:10000}") int cacheMaxEntries,
+            @Value("${jwt.cache.ttl-minutes:10}") long cacheTtlMinutes) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.expiration = expiration;
+        this.verifiedTokens = new BoundedCache<>(cacheMaxEntries, Duration.ofMinutes(cacheTtlMinutes));
+        this.cacheHits = Counter.builder("jwt.verification.cache.requests")
+                .tag("result", "hit")
+                .description("Tokens accepted from the verified-token cache")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("jwt.verification.cache.requests")
+                .tag("result", "miss")
+                .description("Tokens whose signature was verified")
+                .register(meterRegistry);
+        Gauge.builder("jwt.verification.cache.size", verifiedTokens, BoundedCache::size)
+                .register(meterRegistry);
+    }
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    /**
+     * Verify the token and return its claims, parsing it at most once while it stays cached.
+     * Throws a {@link io.jsonwebtoken.JwtException} if the token is invalid or expired.
+     */
+    public Claims parseToken(String token) {
+        String key = sha256(token);
+        Claims cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (!isExpired(cached)) {
+                cacheHits.increment();
+                return cached;
+            }
+            verifiedTokens.remove(key);
+        }
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        cacheMisses.increment();
+        // Rejects bad signatures and expired tokens, so only valid claims are cached
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        verifiedTokens.put(key, claims);
+        return claims;
     }
 
     public String extractUsername(String token) {
@@ -36,20 +91,12 @@ public class JwtService {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return claimsResolver.apply(parseToken(token));
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static boolean isExpired(Claims claims) {
+        Date expiresAt = claims.getExpiration();
+        return expiresAt != null && expiresAt.before(new Date());
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -67,17 +114,26 @@ public class JwtService {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return isTokenValid(parseToken(token), userDetails);
+    }
+
+    /**
+     * Check already verified claims against the user they were issued for
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject()) && !isExpired(claims);
     }
 
     public Long extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
+        return extractUserId(parseToken(token));
+    }
+
+    public Long extractUserId(Claims claims) {
         Object userIdObj = claims.get("userId");
         if (userIdObj instanceof Integer) {
             return ((Integer) userIdObj).longValue();
@@ -86,5 +142,20 @@ public class JwtService {
         }
         return null;
     }
-}
 
+    public String extractRole(String token) {
+        return (String) parseToken(token).get("role");
+    }
+
+    /**
+     * The cache is keyed by a hash so it does not hold usable bearer tokens
+     */
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.medical.emotionmonitoring.service;
+
+import java.time.Instant;
+
+/**
+ * Failure counters and lock state behind {@link SlidingWindowLoginAttemptService}. Lock and unlock
+ * calls report whether the caller made the transition, so a shared implementation (e.g. Redis with
+ * atomic increments and compare-and-set) lets exactly one instance persist each transition.
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * Record a failure and return the number of failures inside the window, including this one
+     */
+    int recordFailure(String email, Instant now);
+
+    /**
+     * Number of failures inside the window ending at {@code now}
+     */
+    int failures(String email, Instant now);
+
+    /**
+     * Lock the account until the given time; true if it was not already locked
+     */
+    boolean lock(String email, Instant until);
+
+    /**
+     * Lock expiry, or null if the account is not locked
+     */
+    Instant lockedUntil(String email);
+
+    /**
+     * Clear the lock if it is still the one expiring at {@code until}; true if this call cleared it
+     */
+    boolean unlock(String email, Instant until);
+
+    /**
+     * Forget all failures and any lock; true if a lock was cleared
+     */
+    boolean reset(String email);
+}
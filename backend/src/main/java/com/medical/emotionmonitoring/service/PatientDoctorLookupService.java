@@ -0,0 +1,97 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.entity.Role;
+import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Resolves which doctor should receive a patient's alerts.
+ * Uses a reverse lookup on the doctor_patient_assignments join table and keeps the answer in a
+ * bounded patient -> doctor map that is invalidated whenever an assignment changes. Doctors' display
+ * names are kept alongside, so a new alert's payload needs no doctor load.
+ */
+@Service
+public class PatientDoctorLookupService {
+
+    private final UserRepository userRepository;
+    private final BoundedCache<Long, Long> doctorIdByPatientId;
+    private final BoundedCache<Long, String> doctorNameById;
+
+    public PatientDoctorLookupService(
+            UserRepository userRepository,
+            @Value("${alert.doctor-lookup.cache-max-entries:10000}") int maxEntries,
+            @Value("${alert.doctor-lookup.cache-ttl-minutes:10}") long ttlMinutes) {
+        this.userRepository = userRepository;
+        this.doctorIdByPatientId = new BoundedCache<>(maxEntries, Duration.ofMinutes(ttlMinutes));
+        this.doctorNameById = new BoundedCache<>(maxEntries, Duration.ofMinutes(ttlMinutes));
+    }
+
+    /**
+     * Find the doctor assigned to a patient, or the first available doctor if none is assigned
+     */
+    public Optional<Long> findDoctorIdForPatient(Long patientId) {
+        Long cached = doctorIdByPatientId.get(patientId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Long> doctorId = userRepository
+                .findAssignedDoctorIdsByPatientId(patientId, Role.DOCTOR, PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
+                .or(() -> Optional.ofNullable(userRepository.findFirstIdByRole(Role.DOCTOR)));
+
+        doctorId.ifPresent(id -> doctorIdByPatientId.put(patientId, id));
+        return doctorId;
+    }
+
+    /**
+     * The doctor's full name, as shown on their alerts
+     */
+    public String findDoctorName(Long doctorId) {
+        String cached = doctorNameById.get(doctorId);
+        if (cached != null) {
+            return cached;
+        }
+        String name = userRepository.findFullNameById(doctorId).orElse(null);
+        if (name != null) {
+            doctorNameById.put(doctorId, name);
+        }
+        return name;
+    }
+
+    /**
+     * Forget the cached doctor for a patient, both now and once the current transaction commits
+     * (so a concurrent lookup cannot re-cache the pre-commit assignment)
+     */
+    public void invalidate(Long patientId) {
+        evictNowAndAfterCompletion(doctorIdByPatientId, patientId);
+    }
+
+    /**
+     * Forget a doctor's cached name after it changes, the same way as {@link #invalidate}
+     */
+    public void invalidateDoctorName(Long doctorId) {
+        evictNowAndAfterCompletion(doctorNameById, doctorId);
+    }
+
+    private static <K> void evictNowAndAfterCompletion(BoundedCache<K, ?> cache, K key) {
+        cache.remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.remove(key);
+                }
+            });
+        }
+    }
+}
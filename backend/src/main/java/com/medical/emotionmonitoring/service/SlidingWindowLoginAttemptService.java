@@ -0,0 +1,168 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.entity.LoginAttempt;
+import com.medical.emotionmonitoring.repository.LoginAttemptRepository;
+import com.medical.emotionmonitoring.repository.UserRepository;
+import com.medical.emotionmonitoring.security.AccountStatusCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Login throttling that counts failures in a {@link LoginAttemptStore} over a sliding window of
+ * {@code security.login.attempt-window-minutes}. Ordinary attempts never touch the database; only
+ * lock and unlock transitions are written to {@code login_attempts} and the user's lock flag, and
+ * locks still active at startup are loaded back into the store.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "security.login.store", havingValue = "memory", matchIfMissing = true)
+public class SlidingWindowLoginAttemptService implements LoginAttemptService, SmartInitializingSingleton {
+
+    private final LoginAttemptStore store;
+    private final LoginAttemptRepository loginAttemptRepository;
+    private final UserRepository userRepository;
+    private final AccountStatusCache accountStatusCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final Duration lockoutDuration;
+
+    public SlidingWindowLoginAttemptService(
+            LoginAttemptStore store,
+            LoginAttemptRepository loginAttemptRepository,
+            UserRepository userRepository,
+            AccountStatusCache accountStatusCache,
+            PlatformTransactionManager transactionManager,
+            @Value("${security.login.max-attempts:5}") int maxAttempts,
+            @Value("${security.login.lockout-duration-minutes:30}") long lockoutDurationMinutes) {
+        this.store = store;
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.userRepository = userRepository;
+        this.accountStatusCache = accountStatusCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.lockoutDuration = Duration.ofMinutes(lockoutDurationMinutes);
+    }
+
+    @Override
+    public void recordFailedAttempt(String email) {
+        Instant now = Instant.now();
+        int failures = store.recordFailure(email, now);
+        if (failures >= maxAttempts) {
+            Instant until = now.plus(lockoutDuration);
+            // Only the attempt that makes the transition persists it
+            if (store.lock(email, until)) {
+                persistLock(email, until);
+                log.warn("Account locked for email: {} after {} failed attempts. Locked until: {}",
+                        email, failures, toLocalDateTime(until));
+            }
+        }
+    }
+
+    @Override
+    public void recordSuccessfulAttempt(String email) {
+        if (store.reset(email)) {
+            persistUnlock(email);
+            log.info("Account unlocked for email: {}", email);
+        }
+    }
+
+    @Override
+    public boolean isAccountLocked(String email) {
+        Instant until = store.lockedUntil(email);
+        if (until == null) {
+            return false;
+        }
+        if (Instant.now().isBefore(until)) {
+            return true;
+        }
+        // Lockout expired; unlock once even if several attempts see it at the same time
+        if (store.unlock(email, until)) {
+            persistUnlock(email);
+            log.info("Lockout expired for email: {}", email);
+        }
+        return false;
+    }
+
+    @Override
+    public int getRemainingAttempts(String email) {
+        return Math.max(0, maxAttempts - store.failures(email, Instant.now()));
+    }
+
+    @Override
+    public LocalDateTime getLockoutUntil(String email) {
+        Instant until = store.lockedUntil(email);
+        return until == null ? null : toLocalDateTime(until);
+    }
+
+    /**
+     * Reload locks persisted by an earlier run, so a restart neither lifts them early nor leaves
+     * the user flag locked with nothing to expire it
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        int restored = 0;
+        for (LoginAttempt attempt : loginAttemptRepository.findByIsLockedTrue()) {
+            LocalDateTime lockedUntil = attempt.getLockedUntil() != null
+                    ? attempt.getLockedUntil()
+                    : LocalDateTime.now().plus(lockoutDuration);
+            if (store.lock(attempt.getEmail(), lockedUntil.atZone(ZoneId.systemDefault()).toInstant())) {
+                restored++;
+            }
+        }
+        if (restored > 0) {
+            log.info("Restored {} account lock(s) from login_attempts", restored);
+        }
+    }
+
+    private void persistLock(String email, Instant until) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LoginAttempt attempt = loginAttemptRepository.findByEmail(email)
+                    .orElse(new LoginAttempt());
+            attempt.setEmail(email);
+            attempt.setAttemptCount(maxAttempts);
+            attempt.setLastAttemptTime(LocalDateTime.now());
+            attempt.setIsLocked(true);
+            attempt.setLockedUntil(toLocalDateTime(until));
+            loginAttemptRepository.save(attempt);
+
+            userRepository.findByEmail(email).ifPresent(user -> {
+                user.setIsAccountNonLocked(false);
+                userRepository.save(user);
+                accountStatusCache.evict(user.getId());
+            });
+        });
+    }
+
+    private void persistUnlock(String email) {
+        transactionTemplate.executeWithoutResult(status -> {
+            loginAttemptRepository.findByEmail(email).ifPresent(attempt -> {
+                attempt.setAttemptCount(0);
+                attempt.setIsLocked(false);
+                attempt.setLockedUntil(null);
+                loginAttemptRepository.save(attempt);
+            });
+
+            userRepository.findByEmail(email).ifPresent(user -> {
+                if (!user.getIsAccountNonLocked()) {
+                    user.setIsAccountNonLocked(true);
+                    userRepository.save(user);
+                    accountStatusCache.evict(user.getId());
+                }
+            });
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
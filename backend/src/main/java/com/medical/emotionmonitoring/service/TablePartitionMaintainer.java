@@ -0,0 +1,99 @@
+package com.medical.emotionmonitoring.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Keeps the monthly partitions of {@code emotions} and {@code alerts} (see
+ * {@code db/partitioning/V4__partition_emotions_and_alerts_by_month.sql}) ahead of the clock.
+ *
+ * <p>New months are split off the catch-all {@code p_future} partition before any row falls in them,
+ * so the daily run moves no rows. Only the first run copies existing rows, once, into
+ * {@code db.partitioning.history-months} past months (the oldest also holds every earlier row).
+ * Months are UTC, like the stored timestamps.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "db.partitioning.enabled", havingValue = "true")
+public class TablePartitionMaintainer implements SmartInitializingSingleton {
+
+    private static final List<String> TABLES = List.of("emotions", "alerts");
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'uuuuMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int historyMonths;
+    private final int monthsAhead;
+
+    public TablePartitionMaintainer(
+            JdbcTemplate jdbcTemplate,
+            @Value("${db.partitioning.history-months:12}") int historyMonths,
+            @Value("${db.partitioning.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.historyMonths = historyMonths;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${db.partitioning.maintenance-cron:0 15 3 * * *}", zone = "UTC")
+    public void maintainPartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (String table : TABLES) {
+            try {
+                addMonths(table, current);
+            } catch (DataAccessException e) {
+                // Another instance may have split the same months first; the next run catches up
+                log.warn("Could not add monthly partitions to {}: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    private void addMonths(String table, YearMonth current) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT partition_name FROM information_schema.partitions " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL",
+                String.class, table);
+        if (!partitions.contains(FUTURE_PARTITION)) {
+            log.warn("Table {} is not partitioned by month; apply the db/partitioning migration first", table);
+            return;
+        }
+
+        YearMonth first = partitions.stream()
+                .filter(name -> !name.equals(FUTURE_PARTITION))
+                .map(name -> YearMonth.parse(name, PARTITION_NAME))
+                .max(Comparator.naturalOrder())
+                .map(latest -> latest.plusMonths(1))
+                .orElse(current.minusMonths(historyMonths));
+        YearMonth last = current.plusMonths(monthsAhead);
+        if (first.isAfter(last)) {
+            return;
+        }
+
+        StringJoiner definitions = new StringJoiner(", ");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.add("PARTITION " + month.format(PARTITION_NAME) +
+                    " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+        definitions.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + FUTURE_PARTITION +
+                " INTO (" + definitions + ")");
+        log.info("Added monthly partitions {} through {} to {}", first, last, table);
+    }
+}
@@ -0,0 +1,137 @@
+package com.medical.emotionmonitoring.service;
+
+import com.medical.emotionmonitoring.repository.AlertRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory unread alert count per doctor, so the badge endpoint never queries. Counts change after
+ * the alert transaction commits (new alert: +1, acknowledged: -n) and are reconciled against a
+ * grouped COUNT query at startup and every {@code alert.unread.reconcile-interval-ms}, which corrects
+ * any drift from updates made outside this service.
+ */
+@Slf4j
+@Component
+public class UnreadAlertCounter implements SmartInitializingSingleton {
+
+    private final AlertRepository alertRepository;
+    private final Map<Long, AtomicLong> unreadByDoctor = new ConcurrentHashMap<>();
+    private final Counter corrections;
+
+    public UnreadAlertCounter(AlertRepository alertRepository, MeterRegistry meterRegistry) {
+        this.alertRepository = alertRepository;
+        this.corrections = Counter.builder("alert.unread.reconcile.corrections")
+                .description("Doctor unread counters found out of date by reconciliation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Unread alerts for the doctor; a doctor not seen yet is counted once and then kept in memory
+     */
+    public long getUnreadCount(Long doctorId) {
+        AtomicLong count = unreadByDoctor.get(doctorId);
+        if (count == null) {
+            long unread = alertRepository.countUnreadAlertsByDoctorId(doctorId);
+            count = unreadByDoctor.putIfAbsent(doctorId, new AtomicLong(unread));
+            if (count == null) {
+                return unread;
+            }
+        }
+        return count.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAlertCreated(AlertCreatedEvent event) {
+        AtomicLong count = unreadByDoctor.get(event.alert().getDoctorId());
+        // Doctors not loaded yet are counted from the database on first read
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Subtract alerts the doctor acknowledged, once the surrounding transaction commits
+     */
+    public void markRead(Long doctorId, long alerts) {
+        if (alerts <= 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            subtract(doctorId, alerts);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                subtract(doctorId, alerts);
+            }
+        });
+    }
+
+    private void subtract(Long doctorId, long alerts) {
+        AtomicLong count = unreadByDoctor.get(doctorId);
+        if (count != null) {
+            count.updateAndGet(current -> Math.max(0, current - alerts));
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reconcile();
+    }
+
+    /**
+     * Reset every counter to the database count. A counter that changes while the query runs is left
+     * for the next round, since the query may or may not have seen that change.
+     */
+    @Scheduled(fixedDelayString = "${alert.unread.reconcile-interval-ms:300000}",
+            initialDelayString = "${alert.unread.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<Long, Long> before = new HashMap<>();
+        unreadByDoctor.forEach((doctorId, count) -> before.put(doctorId, count.get()));
+
+        Map<Long, Long> actual = new HashMap<>();
+        List<Object[]> rows = alertRepository.countUnreadAlertsGroupedByDoctorId();
+        for (Object[] row : rows) {
+            actual.put((Long) row[0], (Long) row[1]);
+        }
+
+        int corrected = 0;
+        for (Map.Entry<Long, Long> entry : actual.entrySet()) {
+            if (unreadByDoctor.putIfAbsent(entry.getKey(), new AtomicLong(entry.getValue())) != null
+                    && update(entry.getKey(), before.get(entry.getKey()), entry.getValue())) {
+                corrected++;
+            }
+        }
+        // Doctors missing from the query have no unread alerts left
+        for (Map.Entry<Long, Long> entry : before.entrySet()) {
+            if (!actual.containsKey(entry.getKey()) && update(entry.getKey(), entry.getValue(), 0L)) {
+                corrected++;
+            }
+        }
+
+        if (corrected > 0) {
+            corrections.increment(corrected);
+            log.info("Reconciled unread alert counters: {} of {} doctor(s) corrected", corrected, unreadByDoctor.size());
+        }
+    }
+
+    private boolean update(Long doctorId, Long expected, long actual) {
+        AtomicLong count = unreadByDoctor.get(doctorId);
+        return count != null && expected != null && expected != actual && count.compareAndSet(expected, actual);
+    }
+}
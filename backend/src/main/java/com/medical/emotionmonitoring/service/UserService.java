@@ -23,6 +23,7 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PatientDoctorLookupService patientDoctorLookupService;
 
     @Transactional
     public UserResponse register(RegisterRequest request) {
@@ -96,6 +97,7 @@ public class UserService {
         // Update doctor profile fields
         if (user.getRole() == Role.DOCTOR) {
             user.setSpecialty(request.getSpecialty());
+            patientDoctorLookupService.invalidateDoctorName(user.getId());
         }
 
         User updatedUser = userRepository.save(user);
@@ -146,6 +148,7 @@ public class UserService {
         if (!doctor.getAssignedPatients().contains(patient)) {
             doctor.getAssignedPatients().add(patient);
             userRepository.save(doctor);
+            patientDoctorLookupService.invalidate(patientId);
         }
     }
 
@@ -161,6 +164,7 @@ public class UserService {
         if (doctor.getAssignedPatients() != null) {
             doctor.getAssignedPatients().removeIf(patient -> patient.getId().equals(patientId));
             userRepository.save(doctor);
+            patientDoctorLookupService.invalidate(patientId);
         }
     }
 
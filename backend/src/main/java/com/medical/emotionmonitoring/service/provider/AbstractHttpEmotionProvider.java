@@ -0,0 +1,202 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Base class for HTTP providers. The image is always streamed into the request body, either raw,
+ * base64-encoded on the fly inside a JSON document, or as a multipart file part, and never loaded
+ * onto the heap as a whole. HTTP and I/O errors propagate so the router can fail over.
+ */
+public abstract class AbstractHttpEmotionProvider implements EmotionProvider {
+
+    private static final byte[] JSON_BODY_PREFIX = "{\"inputs\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_BODY_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_BATCH_PREFIX = "{\"inputs\":[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_BATCH_SUFFIX = "]}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final RestTemplate restTemplate;
+
+    protected AbstractHttpEmotionProvider(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    protected abstract String getUrl();
+
+    @Override
+    public String getModel() {
+        return getName() + ":" + getUrl();
+    }
+
+    /**
+     * POST to the provider URL and return the JSON body as maps and lists
+     */
+    protected Object post(RequestCallback requestCallback) {
+        ResponseEntity<Object> response = restTemplate.execute(
+                getUrl(), HttpMethod.POST, requestCallback, restTemplate.responseEntityExtractor(Object.class));
+        if (response == null || response.getBody() == null) {
+            throw new EmotionProviderException(getName() + " returned an empty response");
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Send the image bytes as the request body
+     */
+    protected static RequestCallback rawImage(InputStreamSource image, long imageSize,
+                                              Consumer<HttpHeaders> authentication) {
+        return request -> {
+            prepareHeaders(request.getHeaders(), MediaType.APPLICATION_OCTET_STREAM, imageSize, authentication);
+            writeBody(request, out -> copy(image, out));
+        };
+    }
+
+    /**
+     * Send {"inputs": "<base64 image>"}, encoding the image while it is written
+     */
+    protected static RequestCallback base64Json(InputStreamSource image, long imageSize,
+                                                Consumer<HttpHeaders> authentication) {
+        long bodySize = imageSize < 0 ? -1
+                : JSON_BODY_PREFIX.length + base64Length(imageSize) + JSON_BODY_SUFFIX.length;
+        return request -> {
+            prepareHeaders(request.getHeaders(), MediaType.APPLICATION_JSON, bodySize, authentication);
+            writeBody(request, out -> {
+                out.write(JSON_BODY_PREFIX);
+                // Base64 never needs JSON escaping; closing the encoder flushes the padding but keeps the body open
+                try (OutputStream base64 = Base64.getEncoder().wrap(StreamUtils.nonClosing(out))) {
+                    copy(image, base64);
+                }
+                out.write(JSON_BODY_SUFFIX);
+            });
+        };
+    }
+
+    /**
+     * Send {"inputs": ["<base64 image>", ...]} for a batch, encoding each image while it is written
+     */
+    protected static RequestCallback base64JsonBatch(List<BatchEmotionProvider.BatchImage> images,
+                                                     Consumer<HttpHeaders> authentication) {
+        long bodySize = JSON_BATCH_PREFIX.length + JSON_BATCH_SUFFIX.length + (images.size() - 1);
+        for (BatchEmotionProvider.BatchImage image : images) {
+            bodySize = image.size() < 0 || bodySize < 0 ? -1 : bodySize + 2 + base64Length(image.size());
+        }
+        long contentLength = bodySize;
+        return request -> {
+            prepareHeaders(request.getHeaders(), MediaType.APPLICATION_JSON, contentLength, authentication);
+            writeBody(request, out -> {
+                out.write(JSON_BATCH_PREFIX);
+                for (int i = 0; i < images.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    out.write('"');
+                    try (OutputStream base64 = Base64.getEncoder().wrap(StreamUtils.nonClosing(out))) {
+                        copy(images.get(i).source(), base64);
+                    }
+                    out.write('"');
+                }
+                out.write(JSON_BATCH_SUFFIX);
+            });
+        };
+    }
+
+    /**
+     * Send a multipart/form-data body with the given text fields followed by the image as a file part
+     */
+    protected static RequestCallback multipart(String fileField, Map<String, String> fields,
+                                               InputStreamSource image, long imageSize,
+                                               Consumer<HttpHeaders> authentication) {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        byte[] preamble = multipartPreamble(boundary, fileField, fields);
+        byte[] epilogue = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long bodySize = imageSize < 0 ? -1 : preamble.length + imageSize + epilogue.length;
+        MediaType contentType = new MediaType(MediaType.MULTIPART_FORM_DATA, Map.of("boundary", boundary));
+        return request -> {
+            prepareHeaders(request.getHeaders(), contentType, bodySize, authentication);
+            writeBody(request, out -> {
+                out.write(preamble);
+                copy(image, out);
+                out.write(epilogue);
+            });
+        };
+    }
+
+    private static byte[] multipartPreamble(String boundary, String fileField, Map<String, String> fields) {
+        ByteArrayOutputStream preamble = new ByteArrayOutputStream();
+        fields.forEach((name, value) -> {
+            preamble.writeBytes(("--" + boundary).getBytes(StandardCharsets.US_ASCII));
+            preamble.writeBytes(CRLF);
+            preamble.writeBytes(("Content-Disposition: form-data; name=\"" + name + "\"")
+                    .getBytes(StandardCharsets.UTF_8));
+            preamble.writeBytes(CRLF);
+            preamble.writeBytes(CRLF);
+            preamble.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            preamble.writeBytes(CRLF);
+        });
+        preamble.writeBytes(("--" + boundary).getBytes(StandardCharsets.US_ASCII));
+        preamble.writeBytes(CRLF);
+        preamble.writeBytes(("Content-Disposition: form-data; name=\"" + fileField + "\"; filename=\"image.jpg\"")
+                .getBytes(StandardCharsets.UTF_8));
+        preamble.writeBytes(CRLF);
+        preamble.writeBytes("Content-Type: application/octet-stream".getBytes(StandardCharsets.US_ASCII));
+        preamble.writeBytes(CRLF);
+        preamble.writeBytes(CRLF);
+        return preamble.toByteArray();
+    }
+
+    private static void prepareHeaders(HttpHeaders headers, MediaType contentType, long contentLength,
+                                       Consumer<HttpHeaders> authentication) {
+        headers.setContentType(contentType);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        if (contentLength >= 0) {
+            // A known length avoids chunked transfer encoding, which some providers reject
+            headers.setContentLength(contentLength);
+        }
+        authentication.accept(headers);
+    }
+
+    /**
+     * Stream the body straight into the connection when the request factory supports it
+     */
+    private static void writeBody(ClientHttpRequest request, StreamingHttpOutputMessage.Body body) throws IOException {
+        if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+            streamingRequest.setBody(body);
+        } else {
+            body.writeTo(request.getBody());
+        }
+    }
+
+    private static void copy(InputStreamSource image, OutputStream out) throws IOException {
+        try (InputStream in = image.getInputStream()) {
+            in.transferTo(out);
+        }
+    }
+
+    private static long base64Length(long size) {
+        return 4 * ((size + 2) / 3);
+    }
+
+    protected static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
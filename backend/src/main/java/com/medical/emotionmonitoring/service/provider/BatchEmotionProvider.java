@@ -0,0 +1,20 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.core.io.InputStreamSource;
+
+import java.util.List;
+
+/**
+ * Provider that can classify several images in one call (Hugging Face style {"inputs": [...]})
+ */
+public interface BatchEmotionProvider extends EmotionProvider {
+
+    /**
+     * Detect emotions for all images in one request; results are returned in input order
+     */
+    List<EmotionDetectionResponse> detectBatch(List<BatchImage> images);
+
+    record BatchImage(InputStreamSource source, long size) {
+    }
+}
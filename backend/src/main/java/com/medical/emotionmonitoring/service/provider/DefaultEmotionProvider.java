@@ -0,0 +1,76 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generic provider behind the legacy {@code emotion.api.url}: the image is sent as {"inputs": base64}
+ * (or raw bytes) and the response may be a prediction list, an "emotions" map or a "predictions" list
+ */
+@Component
+public class DefaultEmotionProvider extends AbstractHttpEmotionProvider implements BatchEmotionProvider {
+
+    private final String url;
+    private final String apiKey;
+    private final boolean rawUpload;
+
+    public DefaultEmotionProvider(
+            RestTemplate restTemplate,
+            @Value("${emotion.api.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}") String url,
+            @Value("${emotion.api.key:}") String apiKey,
+            @Value("${emotion.api.raw-upload:false}") boolean rawUpload) {
+        super(restTemplate);
+        this.url = url;
+        this.apiKey = apiKey;
+        this.rawUpload = rawUpload;
+    }
+
+    @Override
+    public String getName() {
+        return "DEFAULT";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return hasText(url);
+    }
+
+    @Override
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        Object body = post(rawUpload
+                ? rawImage(image, imageSize, this::authenticate)
+                : base64Json(image, imageSize, this::authenticate));
+
+        Map<String, Double> emotions = ProviderResponses.parseLabelScores(body);
+        if (emotions.isEmpty()) {
+            throw new EmotionProviderException("Could not parse emotion detection response: " + body);
+        }
+        return ProviderResponses.toResponse(emotions);
+    }
+
+    /**
+     * Batches always use the JSON form, one base64 string per image
+     */
+    @Override
+    public List<EmotionDetectionResponse> detectBatch(List<BatchImage> images) {
+        return ProviderResponses.parseBatch(post(base64JsonBatch(images, this::authenticate)), images.size(), getName());
+    }
+
+    private void authenticate(HttpHeaders headers) {
+        if (hasText(apiKey)) {
+            headers.setBearerAuth(apiKey);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eden AI face detection: multipart upload with the underlying engine(s) to use; the response holds
+ * one result per engine with the detected faces and their emotion scores
+ */
+@Component
+public class EdenAiEmotionProvider extends AbstractHttpEmotionProvider {
+
+    private final String url;
+    private final String apiKey;
+    private final String engines;
+
+    public EdenAiEmotionProvider(
+            RestTemplate restTemplate,
+            @Value("${emotion.api.edenai.url:https://api.edenai.run/v2/image/face_detection}") String url,
+            @Value("${emotion.api.edenai.key:}") String apiKey,
+            @Value("${emotion.api.edenai.providers:amazon}") String engines) {
+        super(restTemplate);
+        this.url = url;
+        this.apiKey = apiKey;
+        this.engines = engines;
+    }
+
+    @Override
+    public String getName() {
+        return "EDEN_AI";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String getModel() {
+        return super.getModel() + ":" + engines;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return hasText(url) && hasText(apiKey);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        Object body = post(multipart("file", Map.of("providers", engines), image, imageSize,
+                headers -> headers.setBearerAuth(apiKey)));
+
+        // {"amazon": {"status": "success", "items": [{"emotions": {"joy": 0.9, "sorrow": 0.1, ...}}]}}
+        if (!(body instanceof Map<?, ?> response)) {
+            throw new EmotionProviderException("Unexpected Eden AI response format");
+        }
+        boolean anyEngineSucceeded = false;
+        for (Object result : response.values()) {
+            if (!(result instanceof Map<?, ?> engineResult) || !"success".equals(engineResult.get("status"))) {
+                continue;
+            }
+            anyEngineSucceeded = true;
+            if (engineResult.get("items") instanceof List<?> items && !items.isEmpty()
+                    && items.get(0) instanceof Map<?, ?> face && face.get("emotions") instanceof Map) {
+                Map<String, Double> emotions =
+                        ProviderResponses.mapLabelScores((Map<String, Object>) face.get("emotions"));
+                if (!emotions.isEmpty()) {
+                    return ProviderResponses.toResponse(emotions);
+                }
+            }
+        }
+
+        if (anyEngineSucceeded) {
+            throw new EmotionProviderException("Eden AI found no face in the image", false);
+        }
+        throw new EmotionProviderException("Eden AI engines failed: " + response);
+    }
+}
@@ -0,0 +1,197 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import com.medical.emotionmonitoring.service.provider.BatchEmotionProvider.BatchImage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.InputStreamSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects concurrent detections for one batch-capable provider into a single provider call.
+ * The first caller to arrive opens a batch and becomes its leader: it waits until the batch is full
+ * or the linger time has passed, sends the batch on its own thread and hands each waiting caller its
+ * result. No extra threads are involved, and a lone request goes out as a normal single call.
+ */
+public class EmotionMicroBatcher {
+
+    private final BatchEmotionProvider provider;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final DistributionSummary batchSizes;
+    private final DistributionSummary fillRatios;
+    private Batch open;
+
+    public EmotionMicroBatcher(BatchEmotionProvider provider, int maxBatchSize, long lingerMillis,
+                               MeterRegistry meterRegistry) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.provider = provider;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.batchSizes = DistributionSummary.builder("emotion.provider.batch.size")
+                .tag("provider", provider.getName())
+                .description("Images sent per provider call")
+                .register(meterRegistry);
+        this.fillRatios = DistributionSummary.builder("emotion.provider.batch.fill.ratio")
+                .tag("provider", provider.getName())
+                .description("Batch size divided by the configured maximum")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Detect through the current batch; {@code sender} is set when this caller is the one that sends the
+     * batch, so only that caller reports the provider call's outcome
+     */
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize, AtomicBoolean sender) {
+        Pending pending = new Pending(new BatchImage(image, imageSize));
+        Batch batch;
+        boolean leader;
+
+        lock.lock();
+        try {
+            leader = open == null;
+            if (leader) {
+                open = new Batch(lock.newCondition());
+            }
+            batch = open;
+            batch.items.add(pending);
+            if (batch.items.size() >= maxBatchSize) {
+                // Full: close it and wake the leader so it does not wait out the linger time
+                open = null;
+                batch.full.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        sender.set(leader);
+        if (leader) {
+            boolean interrupted = awaitBatch(batch);
+            // Followers depend on the leader, so the batch is sent even if the leader itself was interrupted
+            dispatch(batch);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return pending.await(this, batch);
+    }
+
+    /**
+     * Wait until the batch is full or the linger time has passed, then close it; returns true if interrupted
+     */
+    private boolean awaitBatch(Batch batch) {
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            long remaining = lingerNanos;
+            while (open == batch && remaining > 0) {
+                try {
+                    remaining = batch.full.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+            }
+            if (open == batch) {
+                open = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return interrupted;
+    }
+
+    private void dispatch(Batch batch) {
+        List<Pending> items;
+        lock.lock();
+        try {
+            items = new ArrayList<>(batch.items);
+            batch.dispatched = true;
+        } finally {
+            lock.unlock();
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+
+        batchSizes.record(items.size());
+        fillRatios.record((double) items.size() / maxBatchSize);
+        try {
+            if (items.size() == 1) {
+                BatchImage image = items.get(0).image;
+                items.get(0).result.complete(provider.detect(image.source(), image.size()));
+                return;
+            }
+            List<EmotionDetectionResponse> results = provider.detectBatch(items.stream().map(p -> p.image).toList());
+            if (results.size() != items.size()) {
+                throw new EmotionProviderException(provider.getName() + " returned " + results.size()
+                        + " results for a batch of " + items.size());
+            }
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            items.forEach(p -> p.result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * A caller that gives up before its batch is sent is taken out of it, so the batch never reads
+     * an image whose request has already finished
+     */
+    private void withdraw(Batch batch, Pending pending) {
+        lock.lock();
+        try {
+            if (!batch.dispatched) {
+                batch.items.remove(pending);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Batch {
+        private final Condition full;
+        private final List<Pending> items = new ArrayList<>();
+        private boolean dispatched;
+
+        private Batch(Condition full) {
+            this.full = full;
+        }
+    }
+
+    private static final class Pending {
+        private final BatchImage image;
+        private final CompletableFuture<EmotionDetectionResponse> result = new CompletableFuture<>();
+
+        private Pending(BatchImage image) {
+            this.image = image;
+        }
+
+        private EmotionDetectionResponse await(EmotionMicroBatcher batcher, Batch batch) {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                batcher.withdraw(batch, this);
+                Thread.currentThread().interrupt();
+                throw new EmotionProviderException("Interrupted while waiting for a batched detection", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new EmotionProviderException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.core.io.InputStreamSource;
+
+/**
+ * Adapter for one external emotion detection API. Implementations throw on any failure instead of
+ * falling back, so the router can fail over to another provider.
+ */
+public interface EmotionProvider {
+
+    /**
+     * Provider name as used in {@code emotion.api.provider}, e.g. LUXAND
+     */
+    String getName();
+
+    /**
+     * Identifies the model answering requests; part of the detection cache key
+     */
+    String getModel();
+
+    /**
+     * Whether the provider has the URL and credentials it needs to be called
+     */
+    boolean isConfigured();
+
+    /**
+     * Detect the dominant emotion in an image. The source may be read more than once and concurrently.
+     */
+    EmotionDetectionResponse detect(InputStreamSource image, long imageSize);
+}
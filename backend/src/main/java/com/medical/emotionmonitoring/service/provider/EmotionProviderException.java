@@ -0,0 +1,28 @@
+package com.medical.emotionmonitoring.service.provider;
+
+/**
+ * Raised by an {@link EmotionProvider} when it cannot produce a result. Non-retryable failures
+ * (e.g. no face in the image) mean the provider itself is healthy and other providers would not do better.
+ */
+public class EmotionProviderException extends RuntimeException {
+
+    private final boolean retryable;
+
+    public EmotionProviderException(String message) {
+        this(message, true);
+    }
+
+    public EmotionProviderException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public EmotionProviderException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryable = true;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,451 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import com.medical.emotionmonitoring.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Routes detection requests across the configured providers. Providers whose circuit is open are
+ * skipped and the rest are tried in order of recent p95 latency (in configured order until enough
+ * samples exist). If the first call has not answered within the hedge delay, the next provider is
+ * called in parallel and the first successful answer wins; a failed call fails over immediately.
+ * Calls to batch-capable providers listed in {@code emotion.router.batch.providers} go through a
+ * {@link EmotionMicroBatcher}.
+ */
+@Slf4j
+@Component
+public class EmotionProviderRouter {
+
+    private static final double ROUTING_PERCENTILE = 95;
+
+    private final List<RoutedProvider> providers;
+    private final ExecutorService executor;
+    private final long hedgeDelayNanos;
+    private final int maxHedges;
+    private final long timeoutNanos;
+    private final int minSamples;
+    private final Counter hedgedRequests;
+
+    public EmotionProviderRouter(
+            List<EmotionProvider> availableProviders,
+            MeterRegistry meterRegistry,
+            @Value("${emotion.api.provider:LUXAND}") String primaryProvider,
+            @Value("${emotion.router.providers:LUXAND,HUGGINGFACE,EDEN_AI,DEFAULT,LOCAL}") String providerOrder,
+            @Value("${emotion.router.hedge-delay-ms:2000}") long hedgeDelayMillis,
+            @Value("${emotion.router.max-hedges:1}") int maxHedges,
+            @Value("${emotion.router.timeout-ms:15000}") long timeoutMillis,
+            @Value("${emotion.router.latency-window:100}") int latencyWindow,
+            @Value("${emotion.router.min-samples:5}") int minSamples,
+            @Value("${emotion.router.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${emotion.router.breaker.open-seconds:30}") long openSeconds,
+            @Value("${emotion.router.max-concurrent-calls:64}") int maxConcurrentCalls,
+            @Value("${emotion.router.batch.providers:}") String batchedProviders,
+            @Value("${emotion.router.batch.max-size:8}") int maxBatchSize,
+            @Value("${emotion.router.batch.linger-ms:5}") long batchLingerMillis,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.hedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis);
+        this.maxHedges = maxHedges;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.minSamples = minSamples;
+        this.hedgedRequests = Counter.builder("emotion.provider.hedges")
+                .description("Detections that called a second provider because the first exceeded the hedge delay")
+                .register(meterRegistry);
+
+        // Configured order with the primary provider first; unconfigured providers are left out
+        List<String> order = new ArrayList<>();
+        order.add(primaryProvider.trim().toUpperCase());
+        Arrays.stream(providerOrder.split(","))
+                .map(name -> name.trim().toUpperCase())
+                .filter(name -> !name.isEmpty() && !order.contains(name))
+                .forEach(order::add);
+        Map<String, EmotionProvider> byName = availableProviders.stream()
+                .collect(Collectors.toMap(EmotionProvider::getName, p -> p));
+        List<String> batched = Arrays.stream(batchedProviders.split(","))
+                .map(name -> name.trim().toUpperCase())
+                .toList();
+        this.providers = order.stream()
+                .map(byName::get)
+                .filter(p -> p != null && p.isConfigured())
+                .map(p -> new RoutedProvider(p, new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds)),
+                        new LatencyHistogram(latencyWindow),
+                        p instanceof BatchEmotionProvider batchProvider && batched.contains(p.getName())
+                                ? new EmotionMicroBatcher(batchProvider, maxBatchSize, batchLingerMillis, meterRegistry)
+                                : null,
+                        meterRegistry))
+                .toList();
+
+        // Provider calls are I/O bound; on virtual threads the HTTP connection pool is the only limit
+        this.executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("emotion-provider-vt-", 0).factory())
+                : new ThreadPoolExecutor(0, maxConcurrentCalls, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        new CustomizableThreadFactory("emotion-provider-"), new ThreadPoolExecutor.AbortPolicy());
+
+        log.info("Emotion provider routing order: {} (hedge after {} ms, batching {})",
+                providers.stream().map(p -> p.provider.getName()).toList(), hedgeDelayMillis,
+                providers.stream().filter(p -> p.batcher != null).map(p -> p.provider.getName()).toList());
+    }
+
+    public boolean hasProviders() {
+        return !providers.isEmpty();
+    }
+
+    /**
+     * Identifies the set of models that may answer; used as the model part of the detection cache key
+     */
+    public String describeModels() {
+        return providers.stream().map(p -> p.provider.getModel()).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Detect the emotion in an image using the fastest healthy provider
+     */
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        List<RoutedProvider> plan = plan();
+        if (plan.isEmpty()) {
+            throw new EmotionProviderException("No emotion provider available (all circuits open)");
+        }
+
+        CompletionService<EmotionDetectionResponse> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<EmotionDetectionResponse>, ProviderCall> running = new HashMap<>();
+        long deadline = System.nanoTime() + timeoutNanos;
+        int next = 0;
+        int hedges = 0;
+        EmotionProviderException lastFailure = null;
+        EmotionProviderException unclassifiable = null;
+
+        try {
+            next = launchNext(plan, next, completion, running, image, imageSize);
+            while (!running.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                boolean canHedge = unclassifiable == null && hedges < maxHedges && next < plan.size();
+                Future<EmotionDetectionResponse> done = completion.poll(
+                        canHedge ? Math.min(hedgeDelayNanos, remaining) : remaining, TimeUnit.NANOSECONDS);
+
+                if (done == null) {
+                    if (canHedge && System.nanoTime() < deadline) {
+                        // The current call is over its latency budget; race it against the next provider
+                        int launched = launchNext(plan, next, completion, running, image, imageSize);
+                        if (launched > next) {
+                            hedges++;
+                            hedgedRequests.increment();
+                            log.info("Emotion provider exceeded {} ms; hedging with {}",
+                                    TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos),
+                                    plan.get(launched - 1).provider.getName());
+                        }
+                        next = launched;
+                    }
+                    continue;
+                }
+
+                running.remove(done);
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    EmotionProviderException failure = asProviderException(e.getCause());
+                    if (!failure.isRetryable()) {
+                        // Another provider may still classify the image, so a hedged call keeps running
+                        if (running.isEmpty()) {
+                            throw failure;
+                        }
+                        unclassifiable = failure;
+                        continue;
+                    }
+                    lastFailure = failure;
+                    if (running.isEmpty() && unclassifiable == null) {
+                        next = launchNext(plan, next, completion, running, image, imageSize);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmotionProviderException("Interrupted while waiting for emotion providers", e);
+        } finally {
+            // Losing or timed-out calls are abandoned; their outcome does not count against the provider
+            running.forEach((future, call) -> {
+                call.abandon();
+                future.cancel(true);
+            });
+        }
+
+        if (unclassifiable != null) {
+            throw unclassifiable;
+        }
+        if (System.nanoTime() - deadline >= 0) {
+            throw new EmotionProviderException("Emotion providers did not answer within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms", lastFailure);
+        }
+        throw Optional.ofNullable(lastFailure)
+                .orElseGet(() -> new EmotionProviderException("No emotion provider available (all circuits open)"));
+    }
+
+    /**
+     * Healthy providers, fastest recent p95 first; providers without enough samples are ranked as if
+     * they answered exactly at the hedge delay, so they keep their configured order until measured
+     */
+    private List<RoutedProvider> plan() {
+        long neutralLatency = TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos);
+        return providers.stream()
+                .filter(p -> p.breaker.isCallPermitted())
+                .sorted(Comparator.comparingLong(p -> p.latency.getSampleCount() < minSamples
+                        ? neutralLatency
+                        : p.latency.percentile(ROUTING_PERCENTILE)))
+                .toList();
+    }
+
+    /**
+     * Start a call to the next provider in the plan that grants a permit; returns the new plan position
+     */
+    private int launchNext(List<RoutedProvider> plan, int from,
+                           CompletionService<EmotionDetectionResponse> completion,
+                           Map<Future<EmotionDetectionResponse>, ProviderCall> running,
+                           InputStreamSource image, long imageSize) {
+        for (int i = from; i < plan.size(); i++) {
+            RoutedProvider provider = plan.get(i);
+            if (!provider.breaker.tryAcquirePermission()) {
+                continue;
+            }
+            ProviderCall call = new ProviderCall(provider);
+            try {
+                running.put(completion.submit(() -> call(call, image, imageSize)), call);
+            } catch (RejectedExecutionException e) {
+                provider.breaker.onIgnored();
+                if (running.isEmpty()) {
+                    throw new TooManyRequestsException("Emotion detection is at capacity. Please retry later.", 1);
+                }
+                log.warn("Emotion provider executor saturated; not hedging");
+                return plan.size();
+            }
+            return i + 1;
+        }
+        return plan.size();
+    }
+
+    private EmotionDetectionResponse call(ProviderCall call, InputStreamSource image, long imageSize) {
+        if (!call.start()) {
+            throw new EmotionProviderException("Call abandoned before it started");
+        }
+        RoutedProvider provider = call.provider;
+        String name = provider.provider.getName();
+        long allocatedBefore = currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        // Only the caller that sent a micro-batch reports the provider call; the others share its outcome
+        AtomicBoolean sent = new AtomicBoolean(provider.batcher == null);
+        try {
+            EmotionDetectionResponse response = provider.batcher != null
+                    ? provider.batcher.detect(image, imageSize, sent)
+                    : provider.provider.detect(image, imageSize);
+            if (!sent.get()) {
+                provider.recordBatched(start, true);
+                return response;
+            }
+            long millis = provider.recordSuccess(start);
+            log.info("Emotion provider {} answered in {} ms: emotion={}, confidence={}",
+                    name, millis, response.getEmotion(), response.getConfidence());
+            return response;
+        } catch (EmotionProviderException e) {
+            if (!sent.get()) {
+                provider.recordBatched(start, !e.isRetryable());
+            } else if (!e.isRetryable()) {
+                // The provider worked; the image itself cannot be classified
+                provider.recordSuccess(start);
+            } else {
+                recordFailure(call, start, e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (!sent.get()) {
+                provider.recordBatched(start, false);
+            } else {
+                recordFailure(call, start, e);
+            }
+            throw e;
+        } finally {
+            logAllocation(name, allocatedBefore, imageSize);
+        }
+    }
+
+    private void recordFailure(ProviderCall call, long start, RuntimeException e) {
+        RoutedProvider provider = call.provider;
+        if (call.abandoned) {
+            // Still a latency sample: a provider that always loses the hedge race must not keep ranking first
+            long millis = provider.recordAbandoned(start);
+            log.debug("Abandoned call to emotion provider {} ended after {} ms: {}",
+                    provider.provider.getName(), millis, e.getMessage());
+            return;
+        }
+        long millis = provider.recordFailure(start);
+        log.warn("Emotion provider {} failed after {} ms: {}", provider.provider.getName(), millis, e.getMessage());
+        if (provider.breaker.onFailure()) {
+            log.warn("Circuit opened for emotion provider {} after repeated failures", provider.provider.getName());
+        }
+    }
+
+    private static EmotionProviderException asProviderException(Throwable cause) {
+        if (cause instanceof EmotionProviderException providerException) {
+            return providerException;
+        }
+        return new EmotionProviderException(cause.getMessage(), cause);
+    }
+
+    /**
+     * Report how much heap a provider call allocated (debug level only)
+     */
+    private static void logAllocation(String provider, long allocatedBefore, long imageSize) {
+        if (!log.isDebugEnabled() || allocatedBefore < 0) {
+            return;
+        }
+        long allocatedAfter = currentThreadAllocatedBytes();
+        if (allocatedAfter >= 0) {
+            log.debug("Call to {} allocated {} KB for a {} KB image",
+                    provider, (allocatedAfter - allocatedBefore) / 1024, imageSize / 1024);
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 where the JVM cannot report it (e.g. virtual threads)
+     */
+    private static long currentThreadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemoryEnabled()) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One submitted provider call. Abandoning a call that has not started yet releases its breaker
+     * permit here, since a cancelled task never runs and so never reports an outcome.
+     */
+    private static final class ProviderCall {
+        private static final int NEW = 0;
+        private static final int STARTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final RoutedProvider provider;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private volatile boolean abandoned;
+
+        private ProviderCall(RoutedProvider provider) {
+            this.provider = provider;
+        }
+
+        private boolean start() {
+            return state.compareAndSet(NEW, STARTED);
+        }
+
+        private void abandon() {
+            abandoned = true;
+            if (state.compareAndSet(NEW, CANCELLED)) {
+                provider.breaker.onIgnored();
+            }
+        }
+    }
+
+    private static final class RoutedProvider {
+        private final EmotionProvider provider;
+        private final CircuitBreaker breaker;
+        private final LatencyHistogram latency;
+        private final EmotionMicroBatcher batcher;
+        private final Timer successTimer;
+        private final Timer failureTimer;
+
+        private RoutedProvider(EmotionProvider provider, CircuitBreaker breaker, LatencyHistogram latency,
+                               EmotionMicroBatcher batcher, MeterRegistry meterRegistry) {
+            this.provider = provider;
+            this.breaker = breaker;
+            this.latency = latency;
+            this.batcher = batcher;
+            String name = provider.getName();
+            this.successTimer = Timer.builder("emotion.provider.requests")
+                    .tags("provider", name, "outcome", "success")
+                    .register(meterRegistry);
+            this.failureTimer = Timer.builder("emotion.provider.requests")
+                    .tags("provider", name, "outcome", "failure")
+                    .register(meterRegistry);
+            Gauge.builder("emotion.provider.latency.p95", latency, h -> h.percentile(ROUTING_PERCENTILE))
+                    .tag("provider", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("emotion.provider.circuit.state", breaker, b -> b.getState().ordinal())
+                    .tag("provider", name)
+                    .description("0 = closed, 1 = open, 2 = half-open")
+                    .register(meterRegistry);
+        }
+
+        private long recordSuccess(long startNanos) {
+            long nanos = System.nanoTime() - startNanos;
+            latency.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+            successTimer.record(nanos, TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        private long recordFailure(long startNanos) {
+            long nanos = System.nanoTime() - startNanos;
+            // Slow failures (timeouts) push the provider's p95 up so it is routed to less often
+            latency.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+            failureTimer.record(nanos, TimeUnit.NANOSECONDS);
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * A call that lost a hedge race or timed out: its elapsed time is a lower bound on the provider's
+         * latency, but the failure says nothing about the provider's health
+         */
+        private long recordAbandoned(long startNanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            latency.record(millis);
+            breaker.onIgnored();
+            return millis;
+        }
+
+        /**
+         * A caller whose image rode in another caller's batch: the sender already recorded the call's
+         * latency and breaker outcome, so this one only releases its permit
+         */
+        private void recordBatched(long startNanos, boolean succeeded) {
+            (succeeded ? successTimer : failureTimer).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            breaker.onIgnored();
+        }
+    }
+}
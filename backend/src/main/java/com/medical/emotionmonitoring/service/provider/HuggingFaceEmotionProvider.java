@@ -0,0 +1,70 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hugging Face Inference API image classification: a single image is posted as raw bytes and the
+ * model answers with a list of {"label", "score"} predictions; batches are sent as base64 JSON inputs
+ */
+@Component
+public class HuggingFaceEmotionProvider extends AbstractHttpEmotionProvider implements BatchEmotionProvider {
+
+    private final String url;
+    private final String apiKey;
+
+    public HuggingFaceEmotionProvider(
+            RestTemplate restTemplate,
+            @Value("${emotion.api.huggingface.url:https://api-inference.huggingface.co/models/trpakov/vit-face-expression}") String url,
+            @Value("${emotion.api.huggingface.key:}") String apiKey) {
+        super(restTemplate);
+        this.url = url;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String getName() {
+        return "HUGGINGFACE";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return hasText(url) && hasText(apiKey);
+    }
+
+    @Override
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        Object body = post(rawImage(image, imageSize, headers -> headers.setBearerAuth(apiKey)));
+
+        if (body instanceof Map<?, ?> response && response.containsKey("error")) {
+            // e.g. {"error": "Model ... is currently loading", "estimated_time": 20.0}
+            throw new EmotionProviderException("Hugging Face error: " + response.get("error"));
+        }
+
+        Map<String, Double> emotions = ProviderResponses.parseLabelScores(body);
+        if (emotions.isEmpty()) {
+            throw new EmotionProviderException("Hugging Face response contained no emotion predictions");
+        }
+        return ProviderResponses.toResponse(emotions);
+    }
+
+    @Override
+    public List<EmotionDetectionResponse> detectBatch(List<BatchImage> images) {
+        Object body = post(base64JsonBatch(images, headers -> headers.setBearerAuth(apiKey)));
+        if (body instanceof Map<?, ?> response && response.containsKey("error")) {
+            throw new EmotionProviderException("Hugging Face error: " + response.get("error"));
+        }
+        return ProviderResponses.parseBatch(body, images.size(), getName());
+    }
+}
@@ -0,0 +1,65 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sliding window over the most recent call latencies of one provider, kept in a fixed-size ring
+ * buffer. Percentiles are computed on demand from a sorted copy; the window is small enough that
+ * this is cheaper than maintaining a full histogram.
+ */
+public class LatencyHistogram {
+
+    private final long[] samplesMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+    private int count;
+
+    public LatencyHistogram(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Latency window must hold at least one sample");
+        }
+        this.samplesMillis = new long[windowSize];
+    }
+
+    public void record(long latencyMillis) {
+        lock.lock();
+        try {
+            samplesMillis[next] = latencyMillis;
+            next = (next + 1) % samplesMillis.length;
+            if (count < samplesMillis.length) {
+                count++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSampleCount() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Latency at the given percentile (0-100) over the current window, or -1 if there are no samples
+     */
+    public long percentile(double percentile) {
+        long[] sorted;
+        lock.lock();
+        try {
+            if (count == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samplesMillis, count);
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,77 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Luxand Cloud emotion API: multipart upload of the photo, authenticated with a {@code token} header
+ */
+@Component
+public class LuxandEmotionProvider extends AbstractHttpEmotionProvider {
+
+    private final String url;
+    private final String apiKey;
+
+    public LuxandEmotionProvider(
+            RestTemplate restTemplate,
+            @Value("${emotion.api.luxand.url:https://api.luxand.cloud/photo/emotions}") String url,
+            @Value("${emotion.api.luxand.key:}") String apiKey) {
+        super(restTemplate);
+        this.url = url;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public String getName() {
+        return "LUXAND";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return hasText(url) && hasText(apiKey);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        Object body = post(multipart("photo", Map.of(), image, imageSize, headers -> headers.set("token", apiKey)));
+
+        // {"status": "success", "faces": [{"rectangle": {...}, "emotions": {"happiness": 0.9, ...}}]}
+        List<Object> faces = null;
+        if (body instanceof Map<?, ?> response) {
+            Object status = response.get("status");
+            if (status != null && !"success".equals(status)) {
+                throw new EmotionProviderException("Luxand returned status " + status + ": " + response.get("message"));
+            }
+            if (response.get("faces") instanceof List) {
+                faces = (List<Object>) response.get("faces");
+            }
+        } else if (body instanceof List) {
+            faces = (List<Object>) body;
+        }
+
+        if (faces == null || faces.isEmpty()) {
+            throw new EmotionProviderException("Luxand found no face in the image", false);
+        }
+        if (!(faces.get(0) instanceof Map<?, ?> face) || !(face.get("emotions") instanceof Map)) {
+            throw new EmotionProviderException("Unexpected Luxand response format");
+        }
+
+        Map<String, Double> emotions = ProviderResponses.mapLabelScores((Map<String, Object>) face.get("emotions"));
+        if (emotions.isEmpty()) {
+            throw new EmotionProviderException("Luxand response contained no emotion scores");
+        }
+        return ProviderResponses.toResponse(emotions);
+    }
+}
@@ -0,0 +1,345 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process facial expression model run with ONNX Runtime, so detection keeps working without the
+ * network and gives the same answer for the same image. The model takes one face image as a float
+ * tensor of shape [1, C, H, W] (or [1, H, W, C]) with C = 1 (grayscale) or 3 (RGB) and returns one
+ * score per label in {@code emotion.local.labels}, e.g. a FER-2013 classifier.
+ *
+ * <p>Inference runs on a fixed pool of CPU workers behind a bounded queue. Each worker owns a
+ * preallocated input tensor backed by a direct buffer, plus the scaled image it draws into, so a
+ * detection only allocates for decoding the uploaded image.
+ */
+@Slf4j
+@Component
+public class OnnxEmotionProvider implements EmotionProvider {
+
+    private final Path modelPath;
+    private final List<String> labels;
+    private final boolean softmax;
+    private final float mean;
+    private final float std;
+
+    private OrtEnvironment environment;
+    private OrtSession session;
+    private String inputName;
+    private int channels;
+    private int height;
+    private int width;
+    private boolean channelsLast;
+    private ThreadPoolExecutor executor;
+    private BlockingQueue<InferenceSlot> slots;
+
+    public OnnxEmotionProvider(
+            @Value("${emotion.local.model-path:}") String modelPath,
+            @Value("${emotion.local.labels:angry,disgust,fear,happy,sad,surprise,neutral}") String labels,
+            @Value("${emotion.local.input-size:48}") int inputSize,
+            @Value("${emotion.local.grayscale:true}") boolean grayscale,
+            @Value("${emotion.local.softmax:true}") boolean softmax,
+            @Value("${emotion.local.normalize.mean:0}") float mean,
+            @Value("${emotion.local.normalize.std:1}") float std,
+            @Value("${emotion.local.workers:0}") int workers,
+            @Value("${emotion.local.queue-capacity:32}") int queueCapacity) {
+        this.modelPath = modelPath.isBlank() ? null : Path.of(modelPath.trim());
+        this.labels = Arrays.stream(labels.split(",")).map(String::trim).toList();
+        this.softmax = softmax;
+        this.mean = mean;
+        this.std = std;
+        this.channels = grayscale ? 1 : 3;
+        this.height = inputSize;
+        this.width = inputSize;
+
+        if (this.modelPath != null) {
+            load(workers > 0 ? workers : Runtime.getRuntime().availableProcessors(), queueCapacity);
+        }
+    }
+
+    private void load(int workers, int queueCapacity) {
+        if (!Files.isReadable(modelPath)) {
+            throw new IllegalStateException("emotion.local.model-path is not a readable file: " + modelPath);
+        }
+        try {
+            environment = OrtEnvironment.getEnvironment();
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                // Parallelism comes from the worker pool; each run stays on its worker's core
+                options.setIntraOpNumThreads(1);
+                options.setInterOpNumThreads(1);
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                session = environment.createSession(modelPath.toString(), options);
+            }
+            inputName = session.getInputNames().iterator().next();
+            readInputShape(session.getInputInfo().get(inputName));
+            int outputs = outputSize();
+            if (outputs > 0 && outputs != labels.size()) {
+                throw new IllegalStateException("Model " + modelPath + " has " + outputs
+                        + " outputs but emotion.local.labels lists " + labels.size());
+            }
+
+            slots = new ArrayBlockingQueue<>(workers);
+            for (int i = 0; i < workers; i++) {
+                slots.add(new InferenceSlot());
+            }
+        } catch (OrtException e) {
+            throw new IllegalStateException("Could not load emotion model " + modelPath, e);
+        }
+
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("emotion-local-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Loaded local emotion model {}: input {} {}x{}x{} ({}), {} workers",
+                modelPath.getFileName(), inputName, channels, height, width,
+                channelsLast ? "NHWC" : "NCHW", workers);
+    }
+
+    /**
+     * Take channels and size from the model when it declares them, otherwise keep the configured values
+     */
+    private void readInputShape(NodeInfo input) {
+        if (!(input.getInfo() instanceof TensorInfo tensor) || tensor.getShape().length != 4) {
+            return;
+        }
+        long[] shape = tensor.getShape();
+        channelsLast = (shape[3] == 1 || shape[3] == 3) && shape[1] != 1 && shape[1] != 3;
+        int c = (int) (channelsLast ? shape[3] : shape[1]);
+        int h = (int) (channelsLast ? shape[1] : shape[2]);
+        int w = (int) (channelsLast ? shape[2] : shape[3]);
+        if (c == 1 || c == 3) {
+            channels = c;
+        }
+        if (h > 0 && w > 0) {
+            height = h;
+            width = w;
+        }
+    }
+
+    private int outputSize() throws OrtException {
+        NodeInfo output = session.getOutputInfo().values().iterator().next();
+        if (output.getInfo() instanceof TensorInfo tensor && tensor.getShape().length > 0) {
+            return (int) tensor.getShape()[tensor.getShape().length - 1];
+        }
+        return -1;
+    }
+
+    @Override
+    public String getName() {
+        return "LOCAL";
+    }
+
+    @Override
+    public String getModel() {
+        return modelPath != null ? "local:" + modelPath.getFileName() : "local";
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return session != null;
+    }
+
+    @Override
+    public EmotionDetectionResponse detect(InputStreamSource image, long imageSize) {
+        Future<EmotionDetectionResponse> result;
+        try {
+            result = executor.submit(() -> infer(image));
+        } catch (RejectedExecutionException e) {
+            throw new EmotionProviderException("Local emotion model is at capacity");
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new EmotionProviderException("Interrupted while waiting for the local emotion model");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EmotionProviderException failure) {
+                throw failure;
+            }
+            throw new EmotionProviderException("Local emotion model failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private EmotionDetectionResponse infer(InputStreamSource image) throws IOException, OrtException {
+        BufferedImage decoded;
+        try (InputStream in = image.getInputStream()) {
+            decoded = ImageIO.read(in);
+        }
+        if (decoded == null) {
+            // Another provider may still accept the format, so let the router fail over
+            throw new EmotionProviderException("Image format not supported by the local emotion model");
+        }
+
+        // There is one slot per worker, so this only waits if a worker was interrupted mid-run
+        InferenceSlot slot;
+        try {
+            slot = slots.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmotionProviderException("Interrupted while running the local emotion model");
+        }
+        float[] scores;
+        try {
+            slot.fill(decoded);
+            try (OrtSession.Result output = session.run(Map.of(inputName, slot.tensor))) {
+                scores = toScores(output.get(0));
+            }
+        } finally {
+            slots.add(slot);
+        }
+        return ProviderResponses.toResponse(ProviderResponses.mapLabelScores(labelScores(scores)));
+    }
+
+    private float[] toScores(OnnxValue output) throws OrtException {
+        FloatBuffer values = ((OnnxTensor) output).getFloatBuffer();
+        if (values == null || values.remaining() != labels.size()) {
+            throw new EmotionProviderException("Local emotion model returned an unexpected output");
+        }
+        float[] scores = new float[values.remaining()];
+        values.get(scores);
+        if (softmax) {
+            float max = Float.NEGATIVE_INFINITY;
+            for (float score : scores) {
+                max = Math.max(max, score);
+            }
+            float sum = 0;
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = (float) Math.exp(scores[i] - max);
+                sum += scores[i];
+            }
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= sum;
+            }
+        }
+        return scores;
+    }
+
+    private Map<String, Object> labelScores(float[] scores) {
+        Map<String, Object> labelScores = new LinkedHashMap<>();
+        for (int i = 0; i < scores.length; i++) {
+            labelScores.put(labels.get(i), (double) scores[i]);
+        }
+        return labelScores;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (session == null) {
+            return;
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        // Only slots back in the queue are idle; taking them out keeps a late worker from using a closed one
+        List<InferenceSlot> idle = new ArrayList<>();
+        slots.drainTo(idle);
+        idle.forEach(InferenceSlot::close);
+        if (!executor.isTerminated()) {
+            // A worker is still inside session.run; freeing its tensor or the session under it would crash
+            // in native code, so they are left for the process exit to reclaim
+            log.warn("Local emotion model still running after shutdown; leaving it and {} busy buffer(s) open",
+                    executor.getMaximumPoolSize() - idle.size());
+            return;
+        }
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("Could not close local emotion model: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Buffers for one inference at a time: the scaled image, its pixels and the input tensor,
+     * which reads the direct buffer in place so refilling the buffer updates the tensor
+     */
+    private final class InferenceSlot {
+        private final BufferedImage scaled;
+        private final Graphics2D graphics;
+        private final FloatBuffer input;
+        private final OnnxTensor tensor;
+
+        private InferenceSlot() throws OrtException {
+            scaled = new BufferedImage(width, height,
+                    channels == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+            graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            input = ByteBuffer.allocateDirect(channels * height * width * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            long[] shape = channelsLast
+                    ? new long[]{1, height, width, channels}
+                    : new long[]{1, channels, height, width};
+            tensor = OnnxTensor.createTensor(environment, input, shape);
+        }
+
+        private void fill(BufferedImage image) {
+            graphics.drawImage(image, 0, 0, width, height, null);
+            int pixels = height * width;
+            if (channels == 1) {
+                byte[] gray = ((DataBufferByte) scaled.getRaster().getDataBuffer()).getData();
+                for (int i = 0; i < pixels; i++) {
+                    input.put(i, normalize(gray[i] & 0xFF));
+                }
+                return;
+            }
+            int[] rgb = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < pixels; i++) {
+                int pixel = rgb[i];
+                for (int c = 0; c < 3; c++) {
+                    int value = (pixel >> (16 - 8 * c)) & 0xFF;
+                    input.put(channelsLast ? i * 3 + c : c * pixels + i, normalize(value));
+                }
+            }
+        }
+
+        private float normalize(int value) {
+            return (value / 255f - mean) / std;
+        }
+
+        private void close() {
+            graphics.dispose();
+            tensor.close();
+        }
+    }
+}
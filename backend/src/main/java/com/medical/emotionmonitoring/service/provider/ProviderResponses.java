@@ -0,0 +1,141 @@
+package com.medical.emotionmonitoring.service.provider;
+
+import com.medical.emotionmonitoring.dto.EmotionDetectionResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsing helpers shared by the provider adapters: maps provider-specific labels onto our emotion
+ * types and builds the detection response from the resulting scores.
+ */
+@Slf4j
+final class ProviderResponses {
+
+    private ProviderResponses() {
+    }
+
+    /**
+     * Parse the generic response formats: a list of {"label", "score"} predictions (Hugging Face),
+     * a map with an "emotions" object of label scores, or a map with a "predictions" list
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Double> parseLabelScores(Object body) {
+        if (body instanceof List) {
+            return parsePredictions((List<Object>) body);
+        }
+        if (body instanceof Map) {
+            Map<String, Object> responseMap = (Map<String, Object>) body;
+            if (responseMap.get("emotions") instanceof Map) {
+                return mapLabelScores((Map<String, Object>) responseMap.get("emotions"));
+            }
+            if (responseMap.get("predictions") instanceof List) {
+                return parsePredictions((List<Object>) responseMap.get("predictions"));
+            }
+        }
+        return Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Double> parsePredictions(List<Object> predictions) {
+        Map<String, Double> emotions = new HashMap<>();
+        for (Object item : predictions) {
+            if (item instanceof Map) {
+                Map<String, Object> prediction = (Map<String, Object>) item;
+                if (prediction.get("label") instanceof String label && prediction.get("score") instanceof Number score) {
+                    addScore(emotions, label, score);
+                }
+            }
+        }
+        return emotions;
+    }
+
+    /**
+     * Map a provider's {label: score} object onto our emotion types, ignoring non-numeric entries
+     */
+    static Map<String, Double> mapLabelScores(Map<String, Object> labelScores) {
+        Map<String, Double> emotions = new HashMap<>();
+        labelScores.forEach((label, value) -> {
+            if (value instanceof Number score) {
+                addScore(emotions, label, score);
+            }
+        });
+        return emotions;
+    }
+
+    /**
+     * Unknown labels are skipped; when several labels map to the same emotion the highest score wins
+     */
+    private static void addScore(Map<String, Double> emotions, String label, Number score) {
+        String emotion = mapLabelToEmotion(label);
+        if (emotion != null) {
+            emotions.merge(emotion, score.doubleValue(), Math::max);
+        }
+    }
+
+    /**
+     * Parse a batch response: one prediction list per input, in input order
+     */
+    static List<EmotionDetectionResponse> parseBatch(Object body, int expected, String provider) {
+        if (!(body instanceof List<?> results) || results.size() != expected) {
+            throw new EmotionProviderException(provider + " returned an unexpected batch response");
+        }
+        return results.stream()
+                .map(result -> {
+                    Map<String, Double> emotions = parseLabelScores(result);
+                    if (emotions.isEmpty()) {
+                        throw new EmotionProviderException(provider + " batch response contained no predictions");
+                    }
+                    return toResponse(emotions);
+                })
+                .toList();
+    }
+
+    static EmotionDetectionResponse toResponse(Map<String, Double> emotions) {
+        // Find emotion with highest confidence
+        String dominantEmotion = emotions.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse("NEUTRAL");
+
+        EmotionDetectionResponse response = new EmotionDetectionResponse();
+        response.setEmotion(dominantEmotion);
+        response.setConfidence(emotions.getOrDefault(dominantEmotion, 0.5));
+        response.setEmotions(emotions);
+        return response;
+    }
+
+    /**
+     * Map provider emotion labels to our emotion types.
+     * Supports text-based and vision-based models as well as the Luxand and Eden AI label sets.
+     * Returns null for labels that do not correspond to one of our emotion types.
+     */
+    static String mapLabelToEmotion(String label) {
+        if (label == null) {
+            return null;
+        }
+
+        String lowerLabel = label.toLowerCase();
+        if (lowerLabel.contains("joy") || lowerLabel.contains("happ") || lowerLabel.contains("smile")) {
+            return "HAPPY";
+        } else if (lowerLabel.contains("sad") || lowerLabel.contains("sorrow")) {
+            return "SAD";
+        } else if (lowerLabel.contains("angry") || lowerLabel.contains("anger") || lowerLabel.contains("rage")
+                || lowerLabel.contains("mad")) {
+            return "ANGRY";
+        } else if (lowerLabel.contains("fear") || lowerLabel.contains("afraid") || lowerLabel.contains("scared")) {
+            return "FEAR";
+        } else if (lowerLabel.contains("love") || lowerLabel.contains("surprise")) {
+            return "HAPPY"; // Map positive emotions to HAPPY
+        } else if (lowerLabel.contains("disgust") || lowerLabel.contains("contempt")) {
+            return "ANGRY"; // Map disgust to angry
+        } else if (lowerLabel.contains("neutral") || lowerLabel.contains("calm")) {
+            return "NEUTRAL";
+        }
+
+        log.debug("Ignoring unknown emotion label '{}'", label);
+        return null;
+    }
+}
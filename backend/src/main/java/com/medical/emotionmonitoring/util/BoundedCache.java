@@ -0,0 +1,124 @@
+package com.medical.emotionmonitoring.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small thread-safe LRU cache with an upper bound on entries and an optional time-to-live.
+ * Intended for per-patient / per-user hot state where a full caching library is not needed.
+ * Guarded by a {@link ReentrantLock} rather than {@code synchronized} so that contended access
+ * from virtual threads does not pin their carrier threads.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Create a cache without expiry; entries are only evicted when the size bound is reached
+     */
+    public BoundedCache(int maxSize) {
+        this(maxSize, Duration.ZERO);
+    }
+
+    /**
+     * Create a cache whose entries expire after the given time-to-live (zero disables expiry)
+     */
+    public BoundedCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, expiryFromNow()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store the value unless a live entry already exists; returns the existing value or null
+     */
+    public V putIfAbsent(K key, V value) {
+        lock.lock();
+        try {
+            V existing = get(key);
+            if (existing != null) {
+                return existing;
+            }
+            put(key, value);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long expiryFromNow() {
+        return ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0;
+    }
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return expiresAtNanos != 0 && now - expiresAtNanos >= 0;
+        }
+    }
+}
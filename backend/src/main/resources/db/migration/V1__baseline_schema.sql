@@ -0,0 +1,143 @@
+-- Schema as Hibernate created it with ddl-auto=update from the original entities, before alert
+-- kinds, daily rollups and migrations were introduced. Databases created that way are baselined
+-- at this version and start from V2.
+
+create table alerts (
+    is_read bit not null,
+    created_at datetime(6) not null,
+    doctor_id bigint not null,
+    id bigint not null auto_increment,
+    patient_id bigint not null,
+    message varchar(1000) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table doctor_patient_assignments (
+    doctor_id bigint not null,
+    patient_id bigint not null
+) engine=InnoDB;
+
+create table emotion_records (
+    intensity_level integer,
+    created_at datetime(6),
+    id bigint not null auto_increment,
+    recorded_at datetime(6) not null,
+    updated_at datetime(6),
+    user_id bigint not null,
+    physical_symptoms varchar(500),
+    notes varchar(1000),
+    location varchar(255),
+    trigger_event varchar(255),
+    emotion_type enum ('HAPPY','SAD','ANGRY','ANXIOUS','STRESSED','CALM','EXCITED','FRUSTRATED','CONTENT','WORRIED','FEARFUL','RELAXED','OVERWHELMED','PEACEFUL','IRRITATED') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table emotions (
+    confidence float(53) not null,
+    id bigint not null auto_increment,
+    timestamp datetime(6) not null,
+    user_id bigint not null,
+    emotion_type enum ('HAPPY','SAD','ANGRY','FEAR','NEUTRAL') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table login_attempts (
+    attempt_count integer,
+    is_locked bit,
+    id bigint not null auto_increment,
+    last_attempt_time datetime(6),
+    locked_until datetime(6),
+    email varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table patient_notes (
+    created_at datetime(6),
+    doctor_id bigint not null,
+    id bigint not null auto_increment,
+    patient_id bigint not null,
+    updated_at datetime(6),
+    note varchar(2000) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table patient_tags (
+    created_at datetime(6),
+    doctor_id bigint not null,
+    id bigint not null auto_increment,
+    patient_id bigint not null,
+    updated_at datetime(6),
+    tag varchar(50) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table users (
+    age integer,
+    is_account_non_locked bit,
+    is_enabled bit,
+    created_at datetime(6),
+    id bigint not null auto_increment,
+    last_connected_date datetime(6),
+    updated_at datetime(6),
+    profile_picture varchar(1000),
+    email varchar(255) not null,
+    full_name varchar(255) not null,
+    password varchar(255) not null,
+    specialty varchar(255),
+    gender enum ('MALE','FEMALE','OTHER','PREFER_NOT_TO_SAY'),
+    role enum ('PATIENT','DOCTOR') not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table users
+   add constraint UK_6dotkott2kjsp8vw4d0m25fb7 unique (email);
+
+alter table alerts
+   add constraint FKt807y0vowlke7grnwbqtxaevx
+   foreign key (doctor_id)
+   references users (id);
+
+alter table alerts
+   add constraint FK7bi3jdr0uxnvii0ykart14q4q
+   foreign key (patient_id)
+   references users (id);
+
+alter table doctor_patient_assignments
+   add constraint FKmewbmmgxsnwi9lc6kcomb0dv3
+   foreign key (patient_id)
+   references users (id);
+
+alter table doctor_patient_assignments
+   add constraint FKk4cbjaptnmdugsrs4n0rsig1k
+   foreign key (doctor_id)
+   references users (id);
+
+alter table emotion_records
+   add constraint FKj2gdj5jt9xvewtp9mdck04w5v
+   foreign key (user_id)
+   references users (id);
+
+alter table emotions
+   add constraint FK13e10yt0kc0n531k2x1ut0n05
+   foreign key (user_id)
+   references users (id);
+
+alter table patient_notes
+   add constraint FK6jbta1nwo5kty489gnhiohcng
+   foreign key (doctor_id)
+   references users (id);
+
+alter table patient_notes
+   add constraint FKkuin9m8je0rgucl6hkuq7hqrr
+   foreign key (patient_id)
+   references users (id);
+
+alter table patient_tags
+   add constraint FKlqnw787ti3q0ixpb8yrd8w18r
+   foreign key (doctor_id)
+   references users (id);
+
+alter table patient_tags
+   add constraint FKe0k7mcc2ch0nvr9lmthshy8yk
+   foreign key (patient_id)
+   references users (id);
@@ -0,0 +1,36 @@
+-- Alert kind and emotion type, used to find a patient's latest alert of a kind and emotion type
+-- without parsing messages; alerts created before this migration have neither and never count as duplicates.
+alter table alerts
+   add column emotion_type enum ('HAPPY','SAD','ANGRY','FEAR','NEUTRAL');
+
+alter table alerts
+   add column kind enum ('EMOTION_DETECTED','EMOTION_PATTERN');
+
+create index idx_alerts_patient_kind_created
+   on alerts (patient_id, kind, emotion_type, created_at);
+
+-- Per-patient, per-day emotion counts maintained on insert, so statistics read a few rows per
+-- patient instead of every emotion. EmotionRollupService backfills it from existing emotions on the
+-- first start after this migration.
+create table emotion_daily_rollups (
+    bucket_date date not null,
+    confidence_sum float(53) not null,
+    angry_count bigint not null,
+    fear_count bigint not null,
+    happy_count bigint not null,
+    id bigint not null auto_increment,
+    negative_count bigint not null,
+    neutral_count bigint not null,
+    sad_count bigint not null,
+    total_count bigint not null,
+    user_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table emotion_daily_rollups
+   add constraint uk_emotion_rollups_patient_date unique (user_id, bucket_date);
+
+alter table emotion_daily_rollups
+   add constraint FKcx8b22d1sypypgm0cf3sccjbr
+   foreign key (user_id)
+   references users (id);
@@ -0,0 +1,46 @@
+-- Composite indexes for the repository finders, so per-patient and per-doctor reads are index
+-- range scans in the order they are returned instead of scans of the whole table.
+
+-- Patient history and keyset pages: WHERE user_id = ? [AND timestamp BETWEEN ? AND ?]
+-- ORDER BY timestamp DESC, id DESC
+create index idx_emotions_patient_timestamp
+   on emotions (user_id, timestamp, id);
+
+-- findByPatientIdAndEmotionType and the per-type counts (covering)
+create index idx_emotions_patient_type
+   on emotions (user_id, emotion_type);
+
+create index idx_emotions_patient_confidence
+   on emotions (user_id, confidence);
+
+-- Doctor alert lists, date ranges and the inbox: WHERE doctor_id = ? ORDER BY created_at DESC, id DESC
+create index idx_alerts_doctor_created
+   on alerts (doctor_id, created_at, id);
+
+-- Unread lists, unread counts (covering), unread inbox pages and acknowledge-before updates
+create index idx_alerts_doctor_read_created
+   on alerts (doctor_id, is_read, created_at, id);
+
+create index idx_alerts_patient_created
+   on alerts (patient_id, created_at);
+
+create index idx_alerts_patient_read_created
+   on alerts (patient_id, is_read, created_at);
+
+create index idx_emotion_records_user_recorded
+   on emotion_records (user_id, recorded_at);
+
+create index idx_emotion_records_user_type
+   on emotion_records (user_id, emotion_type);
+
+create index idx_patient_notes_patient_doctor_created
+   on patient_notes (patient_id, doctor_id, created_at);
+
+create index idx_patient_notes_patient_created
+   on patient_notes (patient_id, created_at);
+
+create index idx_patient_notes_doctor_created
+   on patient_notes (doctor_id, created_at);
+
+create index idx_patient_tags_patient_doctor_tag
+   on patient_tags (patient_id, doctor_id, tag);
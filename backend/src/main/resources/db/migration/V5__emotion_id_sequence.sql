@@ -0,0 +1,7 @@
+-- Counter for the pooled emotion id generator (allocation size 50), which lets Hibernate batch
+-- emotion inserts. Hibernate reads next_val as the top of the next block of 50 ids, so it starts
+-- 51 above the highest existing id; an empty table starts at 1 as Hibernate itself would create it.
+create table emotions_seq (next_val bigint) engine=InnoDB;
+
+insert into emotions_seq (next_val)
+select coalesce(max(id) + 51, 1) from emotions;
@@ -0,0 +1,33 @@
+-- Monthly RANGE partitioning of emotions (by timestamp) and alerts (by created_at). MySQL only,
+-- and opt-in: add classpath:db/partitioning to spring.flyway.locations and set
+-- db.partitioning.enabled=true so TablePartitionMaintainer splits p_future into monthly partitions
+-- ahead of time. Partitioned InnoDB tables cannot have foreign keys and need the partition column
+-- in the primary key, so the user foreign keys are dropped and the keys become (id, <time column>).
+
+SET @drop_fks = (SELECT GROUP_CONCAT(CONCAT('DROP FOREIGN KEY `', constraint_name, '`') SEPARATOR ', ')
+                 FROM information_schema.referential_constraints
+                 WHERE constraint_schema = DATABASE() AND table_name = 'emotions');
+SET @ddl = IF(@drop_fks IS NULL, 'DO 0', CONCAT('ALTER TABLE emotions ', @drop_fks));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+ALTER TABLE emotions DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp);
+
+ALTER TABLE emotions PARTITION BY RANGE COLUMNS (timestamp) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+SET @drop_fks = (SELECT GROUP_CONCAT(CONCAT('DROP FOREIGN KEY `', constraint_name, '`') SEPARATOR ', ')
+                 FROM information_schema.referential_constraints
+                 WHERE constraint_schema = DATABASE() AND table_name = 'alerts');
+SET @ddl = IF(@drop_fks IS NULL, 'DO 0', CONCAT('ALTER TABLE alerts ', @drop_fks));
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+ALTER TABLE alerts DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at);
+
+ALTER TABLE alerts PARTITION BY RANGE COLUMNS (created_at) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
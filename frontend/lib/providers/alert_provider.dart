@@ -10,10 +10,15 @@ class AlertProvider with ChangeNotifier {
   List<AlertModel> _alerts = [];
   List<AlertModel> _unreadAlerts = [];
   
-  // Real-time polling
+  // Real-time updates: alert stream, with polling as a fallback
   Timer? _pollingTimer;
   int? _currentDoctorId;
   bool _isPolling = false;
+  StreamSubscription<Map<String, dynamic>>? _alertSubscription;
+  Timer? _reconnectTimer;
+  int? _lastAlertId;
+  int _streamFailures = 0;
+  static const int _maxStreamFailures = 3;
 
   bool get isLoading => _isLoading;
   String? get errorMessage => _errorMessage;
@@ -146,35 +151,99 @@ class AlertProvider with ChangeNotifier {
     notifyListeners();
   }
 
-  /// Start real-time polling for alerts (refreshes every 10 seconds)
+  /// Start real-time alert updates: loads the unread alerts once, then listens to the
+  /// server's alert stream. Falls back to refreshing every 10 seconds if the stream
+  /// keeps failing (e.g. a server without the stream endpoint).
   void startRealTimePolling(int doctorId) {
     if (_isPolling && _currentDoctorId == doctorId) {
-      return; // Already polling for this doctor
+      return; // Already listening for this doctor
     }
 
-    stopPolling(); // Stop any existing polling
+    stopPolling(); // Stop any existing stream or polling
     _currentDoctorId = doctorId;
     _isPolling = true;
+    _streamFailures = 0;
 
-    // Load immediately (not silent for initial load)
-    loadUnreadAlertsByDoctorId(doctorId);
+    // Load immediately (not silent for initial load), then follow the stream
+    loadUnreadAlertsByDoctorId(doctorId).then((_) {
+      if (_currentDoctorId == doctorId) {
+        _lastAlertId = _unreadAlerts.isEmpty
+            ? null
+            : _unreadAlerts.map((a) => a.id).reduce((a, b) => a > b ? a : b);
+        _connectAlertStream();
+      }
+    });
+
+    notifyListeners();
+  }
+
+  void _connectAlertStream() {
+    _alertSubscription?.cancel();
+    _alertSubscription = _apiService.streamAlerts(lastEventId: _lastAlertId).listen(
+      (json) {
+        _streamFailures = 0;
+        _onAlertReceived(AlertModel.fromJson(json));
+      },
+      onError: (_) => _onAlertStreamClosed(failed: true),
+      onDone: () => _onAlertStreamClosed(failed: false),
+      cancelOnError: true,
+    );
+  }
+
+  void _onAlertReceived(AlertModel alert) {
+    if (_lastAlertId == null || alert.id > _lastAlertId!) {
+      _lastAlertId = alert.id;
+    }
+    // Alerts replayed after a reconnect may already be known
+    if (alert.isRead || _unreadAlerts.any((a) => a.id == alert.id)) {
+      return;
+    }
+    _unreadAlerts = [alert, ..._unreadAlerts];
+    notifyListeners();
+  }
 
-    // Then poll every 10 seconds for real-time updates (silent to avoid UI flicker)
+  void _onAlertStreamClosed({required bool failed}) {
+    _alertSubscription = null;
+    if (_currentDoctorId == null) {
+      return; // Stopped
+    }
+    if (failed) {
+      _streamFailures++;
+    }
+    if (_streamFailures >= _maxStreamFailures) {
+      _startFallbackPolling();
+      return;
+    }
+    // Reconnect; missed alerts are replayed from the last id received
+    _reconnectTimer?.cancel();
+    _reconnectTimer = Timer(const Duration(seconds: 5), () {
+      if (_currentDoctorId != null) {
+        _connectAlertStream();
+      }
+    });
+  }
+
+  void _startFallbackPolling() {
+    _pollingTimer?.cancel();
+    // Poll every 10 seconds (silent to avoid UI flicker)
     _pollingTimer = Timer.periodic(const Duration(seconds: 10), (timer) {
       if (_currentDoctorId != null) {
         loadUnreadAlertsByDoctorId(_currentDoctorId!, silent: true);
       }
     });
-
-    notifyListeners();
   }
 
-  /// Stop real-time polling
+  /// Stop real-time updates
   void stopPolling() {
+    _alertSubscription?.cancel();
+    _alertSubscription = null;
+    _reconnectTimer?.cancel();
+    _reconnectTimer = null;
     _pollingTimer?.cancel();
     _pollingTimer = null;
     _isPolling = false;
     _currentDoctorId = null;
+    _lastAlertId = null;
     notifyListeners();
   }
 
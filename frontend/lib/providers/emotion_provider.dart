@@ -1,3 +1,6 @@
+import 'dart:async';
+import 'dart:convert';
+import 'dart:io';
 import 'package:flutter/foundation.dart';
 import 'package:image_picker/image_picker.dart';
 import '../models/emotion_model.dart';
@@ -15,6 +18,19 @@ class EmotionProvider with ChangeNotifier {
   List<EmotionModel> get emotions => _emotions;
   EmotionModel? get lastEmotion => _lastEmotion;
 
+  // Live detection session (camera frames streamed over a WebSocket)
+  WebSocket? _liveSocket;
+  StreamSubscription<dynamic>? _liveSubscription;
+  String? _liveEmotion;
+  double? _liveConfidence;
+  Duration _liveFrameInterval = const Duration(milliseconds: 500);
+
+  bool get isLive => _liveSocket != null;
+  String? get liveEmotion => _liveEmotion;
+  double? get liveConfidence => _liveConfidence;
+  /// How often to send a frame; the server skips frames sent faster than it samples
+  Duration get liveFrameInterval => _liveFrameInterval;
+
   Future<bool> createEmotion(String emotionType, double confidence) async {
     _isLoading = true;
     _errorMessage = null;
@@ -30,6 +46,11 @@ class EmotionProvider with ChangeNotifier {
         _isLoading = false;
         notifyListeners();
         return true;
+      } else if (response.statusCode == 202) {
+        // Accepted into the server's write-behind buffer; it appears in the history once saved
+        _isLoading = false;
+        notifyListeners();
+        return true;
       } else {
         _errorMessage = (response.data as Map<String, dynamic>?)?['message'] ?? 'Failed to create emotion';
         _isLoading = false;
@@ -130,6 +151,89 @@ class EmotionProvider with ChangeNotifier {
     }
   }
 
+  /// Start a live detection session; frames are then sent with [sendLiveFrame]
+  Future<bool> startLiveSession() async {
+    if (_liveSocket != null) {
+      return true;
+    }
+    _errorMessage = null;
+    try {
+      final socket = await _apiService.openEmotionStream();
+      _liveSocket = socket;
+      _liveSubscription = socket.listen(
+        (message) {
+          if (message is String) {
+            _onLiveMessage(jsonDecode(message) as Map<String, dynamic>);
+          }
+        },
+        onError: (_) => _onLiveClosed(),
+        onDone: _onLiveClosed,
+        cancelOnError: true,
+      );
+      notifyListeners();
+      return true;
+    } catch (e) {
+      _errorMessage = 'Could not start live detection. Please try again.';
+      notifyListeners();
+      return false;
+    }
+  }
+
+  void sendLiveFrame(List<int> jpegBytes) {
+    if (_liveSocket?.readyState == WebSocket.open) {
+      _liveSocket!.add(jpegBytes);
+    }
+  }
+
+  void _onLiveMessage(Map<String, dynamic> message) {
+    switch (message['type']) {
+      case 'session':
+        final framesPerSecond = (message['framesPerSecond'] as num?)?.toDouble() ?? 2;
+        _liveFrameInterval = Duration(milliseconds: (1000 / framesPerSecond).round());
+        break;
+      case 'frame':
+        _liveEmotion = message['emotion'] as String?;
+        _liveConfidence = (message['confidence'] as num?)?.toDouble();
+        notifyListeners();
+        break;
+      case 'reading':
+        final emotion = EmotionModel.fromJson(message['reading'] as Map<String, dynamic>);
+        _emotions.insert(0, emotion);
+        _lastEmotion = emotion;
+        notifyListeners();
+        break;
+    }
+  }
+
+  void _onLiveClosed() {
+    if (_liveSocket == null) {
+      return;
+    }
+    _liveSubscription = null;
+    _liveSocket = null;
+    _liveEmotion = null;
+    _liveConfidence = null;
+    notifyListeners();
+  }
+
+  /// End the live session; the server saves the frames seen since its last reading
+  Future<void> stopLiveSession() async {
+    final socket = _liveSocket;
+    if (socket == null) {
+      return;
+    }
+    await socket.close(WebSocketStatus.normalClosure);
+    await _liveSubscription?.cancel();
+    _onLiveClosed();
+  }
+
+  @override
+  void dispose() {
+    _liveSubscription?.cancel();
+    _liveSocket?.close(WebSocketStatus.normalClosure);
+    super.dispose();
+  }
+
   void clearError() {
     _errorMessage = null;
     notifyListeners();
@@ -23,6 +23,7 @@ class _CameraScreenState extends State<CameraScreen> {
   bool _isCapturing = false;
   XFile? _capturedImage;
   String? _base64Image;
+  EmotionProvider? _liveProvider; // Set while frames are streamed for live detection
 
   @override
   void initState() {
@@ -190,8 +191,63 @@ class _CameraScreenState extends State<CameraScreen> {
     }
   }
 
+  Future<void> _toggleLiveDetection() async {
+    final emotionProvider = Provider.of<EmotionProvider>(context, listen: false);
+    if (_liveProvider != null) {
+      setState(() {
+        _liveProvider = null;
+      });
+      await emotionProvider.stopLiveSession();
+      return;
+    }
+
+    if (!await emotionProvider.startLiveSession()) {
+      if (mounted) {
+        ScaffoldMessenger.of(context).showSnackBar(
+          SnackBar(
+            content: Text(emotionProvider.errorMessage ?? 'Could not start live detection'),
+            backgroundColor: Colors.red,
+          ),
+        );
+      }
+      return;
+    }
+    setState(() {
+      _liveProvider = emotionProvider;
+    });
+    _streamFrames(emotionProvider);
+  }
+
+  /// Capture frames and send them at the server's sampling rate until live detection stops.
+  /// The server saves one reading per interval, so nothing is stored per frame here.
+  Future<void> _streamFrames(EmotionProvider emotionProvider) async {
+    while (mounted && _liveProvider != null && emotionProvider.isLive &&
+        _controller != null && _controller!.value.isInitialized) {
+      final started = DateTime.now();
+      try {
+        final XFile frame = await _controller!.takePicture();
+        emotionProvider.sendLiveFrame(await frame.readAsBytes());
+        await File(frame.path).delete();
+      } catch (_) {
+        // A frame that could not be captured is simply skipped
+      }
+      final remaining = emotionProvider.liveFrameInterval - DateTime.now().difference(started);
+      if (remaining > Duration.zero) {
+        await Future.delayed(remaining);
+      }
+    }
+    if (mounted && _liveProvider != null) {
+      // The session ended on the server side
+      setState(() {
+        _liveProvider = null;
+      });
+    }
+  }
+
   @override
   void dispose() {
+    _liveProvider?.stopLiveSession();
+    _liveProvider = null;
     _controller?.dispose();
     super.dispose();
   }
@@ -210,6 +266,14 @@ class _CameraScreenState extends State<CameraScreen> {
           'Capture Face',
           style: TextStyle(color: Colors.white),
         ),
+        actions: [
+          if (_isInitialized && _capturedImage == null)
+            IconButton(
+              tooltip: _liveProvider != null ? 'Stop live detection' : 'Live detection',
+              icon: Icon(_liveProvider != null ? Icons.stop_circle_outlined : Icons.videocam_outlined),
+              onPressed: _toggleLiveDetection,
+            ),
+        ],
       ),
       body: _buildBody(colorScheme),
     );
@@ -255,14 +319,23 @@ class _CameraScreenState extends State<CameraScreen> {
               color: Colors.black54,
               borderRadius: BorderRadius.circular(12),
             ),
-            child: const Text(
-              'Position your face in the frame',
-              style: TextStyle(
-                color: Colors.white,
-                fontSize: 16,
-                fontWeight: FontWeight.w500,
-              ),
-              textAlign: TextAlign.center,
+            child: Consumer<EmotionProvider>(
+              builder: (context, emotionProvider, _) {
+                final liveEmotion = emotionProvider.liveEmotion;
+                return Text(
+                  _liveProvider == null
+                      ? 'Position your face in the frame'
+                      : liveEmotion == null
+                          ? 'Live detection started...'
+                          : 'Live: $liveEmotion (${((emotionProvider.liveConfidence ?? 0) * 100).toStringAsFixed(0)}%)',
+                  style: const TextStyle(
+                    color: Colors.white,
+                    fontSize: 16,
+                    fontWeight: FontWeight.w500,
+                  ),
+                  textAlign: TextAlign.center,
+                );
+              },
             ),
           ),
         ),
@@ -291,7 +364,7 @@ class _CameraScreenState extends State<CameraScreen> {
             children: [
               // Capture Button
               GestureDetector(
-                onTap: _isCapturing ? null : _captureImage,
+                onTap: _isCapturing || _liveProvider != null ? null : _captureImage,
                 child: Container(
                   width: 80,
                   height: 80,
@@ -1,4 +1,5 @@
 import 'dart:convert';
+import 'dart:io';
 import 'package:dio/dio.dart';
 import '../config/app_config.dart';
 import 'api_exception.dart';
@@ -422,6 +423,26 @@ class ApiService {
     );
   }
 
+  /// Open a live emotion detection session (patients only). Send camera frames as
+  /// binary JPEG messages; the server replies with JSON text messages: `session`
+  /// (its sampling rate), `frame` (one per detected frame) and `reading` (an
+  /// emotion saved from the frames since the last reading). The token is sent once,
+  /// on the handshake.
+  Future<WebSocket> openEmotionStream() async {
+    final token = await _secureStorage.getToken();
+    final url = '${baseUrl.replaceFirst(RegExp('^http'), 'ws')}/emotions/stream';
+    try {
+      return await WebSocket.connect(
+        url,
+        headers: {
+          if (token != null) 'Authorization': 'Bearer $token',
+        },
+      ).timeout(AppConfig.connectTimeout);
+    } catch (e) {
+      throw ApiException.network('Could not start live detection', e);
+    }
+  }
+
   Future<ApiResponse<Map<String, dynamic>>> getEmotionById(int id) async {
     return get<Map<String, dynamic>>('/emotions/$id');
   }
@@ -458,6 +479,56 @@ class ApiService {
     return put<void>('/alerts/$alertId/read');
   }
 
+  /// Open the Server-Sent Events stream of the signed-in doctor's new alerts.
+  /// Yields the JSON of each `alert` event; pass the last alert id received to get
+  /// the alerts missed while disconnected first. The server sends a heartbeat comment
+  /// well within [AppConfig.receiveTimeout], so a silent connection means it is dead.
+  Stream<Map<String, dynamic>> streamAlerts({int? lastEventId}) async* {
+    final Response<ResponseBody> response;
+    try {
+      response = await _dio.get<ResponseBody>(
+        '/alerts/stream',
+        options: Options(
+          responseType: ResponseType.stream,
+          headers: {
+            'Accept': 'text/event-stream',
+            if (lastEventId != null) 'Last-Event-ID': '$lastEventId',
+          },
+        ),
+      );
+    } catch (e) {
+      throw _handleError(e);
+    }
+    if (response.statusCode != 200 || response.data == null) {
+      throw ApiException.http(
+        response.statusCode ?? 0,
+        _getDefaultErrorMessage(response.statusCode),
+      );
+    }
+
+    final lines = response.data!.stream
+        .cast<List<int>>()
+        .transform(utf8.decoder)
+        .transform(const LineSplitter());
+    String? event;
+    final data = StringBuffer();
+    await for (final line in lines) {
+      if (line.isEmpty) {
+        // A blank line ends the event
+        if (event == 'alert' && data.isNotEmpty) {
+          yield jsonDecode(data.toString()) as Map<String, dynamic>;
+        }
+        event = null;
+        data.clear();
+      } else if (line.startsWith('event:')) {
+        event = line.substring(6).trim();
+      } else if (line.startsWith('data:')) {
+        data.write(line.substring(5).trimLeft());
+      }
+      // Comments (heartbeats), id: and retry: lines need no handling here
+    }
+  }
+
   // User Profile endpoints
   Future<ApiResponse<Map<String, dynamic>>> getCurrentUser() async {
     return get<Map<String, dynamic>>('/users/me');